@@ -0,0 +1,23 @@
+package org.healthnlp.deepphe.ontologies;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * run ontology benchmarks with allocation rates reported by GC profiler
+ * usage: BenchmarkRunner [benchmark regexp]
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		String include = (args.length > 0)?args[0]:".*Benchmark.*";
+		Options opt = new OptionsBuilder()
+			.include(include)
+			.addProfiler(GCProfiler.class)
+			.jvmArgsAppend("-D"+BenchmarkWorkspace.ONTOLOGIES_HOME+"="+BenchmarkWorkspace.getOntologiesHome().getAbsolutePath())
+			.build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,71 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * scratch directory with fresh copies of the bundled ontologies,
+ * both tools save in place, so every benchmark invocation needs its own copy
+ */
+public class BenchmarkWorkspace {
+	public static final String ONTOLOGIES_HOME = "ontologies.home";
+	private File root;
+
+	public BenchmarkWorkspace() throws IOException{
+		root = Files.createTempDirectory("ontology-bench").toFile();
+	}
+
+	/**
+	 * get directory of this repository that has deepphe/ and cancer_models/ folders
+	 * @return
+	 */
+	public static File getOntologiesHome(){
+		return new File(System.getProperty(ONTOLOGIES_HOME,System.getProperty("user.dir")));
+	}
+
+	/**
+	 * copy bundled ontologies (relative to ontologies home) into a workspace sub-directory
+	 * @param dir - workspace sub-directory
+	 * @param paths - ontology paths relative to ontologies home
+	 * @return sub-directory
+	 * @throws IOException
+	 */
+	public File copy(String dir, String ... paths) throws IOException{
+		File d = new File(root,dir);
+		if(!d.exists())
+			d.mkdirs();
+		for(String path: paths){
+			File f = new File(getOntologiesHome(),path);
+			Files.copy(f.toPath(),new File(d,f.getName()).toPath(),StandardCopyOption.REPLACE_EXISTING);
+		}
+		return d;
+	}
+
+	/**
+	 * get file inside workspace
+	 * @param dir
+	 * @param path
+	 * @return
+	 */
+	public File getFile(String dir, String path){
+		return new File(new File(root,dir),new File(path).getName());
+	}
+
+	/**
+	 * remove workspace
+	 */
+	public void delete(){
+		delete(root);
+	}
+
+	private void delete(File f){
+		File [] files = f.listFiles();
+		if(files != null){
+			for(File c: files)
+				delete(c);
+		}
+		f.delete();
+	}
+}
@@ -0,0 +1,122 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+
+/**
+ * phase by phase timing of ConvertOntologyURIs.convert() on bundled cancer models
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConvertOntologyURIsBenchmark {
+	static final int LOAD = 0, PROPERTIES = 1, CLASSES = 2, RESTRICTIONS = 3, SAVE = 4;
+
+	/**
+	 * fresh conversion that has been run up to (but not including) a given phase
+	 */
+	@State(Scope.Thread)
+	public static abstract class Conversion {
+		@Param({"cancer_models/cancer.owl","cancer_models/breastCancer.owl"})
+		public String ontology;
+
+		BenchmarkWorkspace workspace;
+		ConvertOntologyURIs converter;
+		File sourceFile,targetDir;
+		String targetURI;
+		IOntology source, target;
+
+		void prepare(int phase) throws Exception {
+			workspace = new BenchmarkWorkspace();
+			workspace.copy("source","cancer_models/cancer.owl",ontology);
+			targetDir = workspace.copy("target","cancer_models/cancer.owl");
+			sourceFile = workspace.getFile("source",ontology);
+			targetURI = ConvertOntologyURIs.BASE_URL_PREFIX+"/deepphe/cancer/"+sourceFile.getName();
+			converter = new ConvertOntologyURIs();
+
+			if(phase > LOAD){
+				source = converter.loadSource(sourceFile);
+				target = converter.createTarget(source,targetDir,targetURI);
+			}
+			if(phase > PROPERTIES)
+				converter.copyProperties(source,target);
+			if(phase > CLASSES)
+				converter.copyClasses(source,target);
+			if(phase > RESTRICTIONS)
+				converter.copyRestrictions(source,target);
+		}
+
+		@TearDown(Level.Invocation)
+		public void tearDown(){
+			workspace.delete();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class BeforeLoad extends Conversion {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(LOAD); }
+	}
+
+	@State(Scope.Thread)
+	public static class BeforeProperties extends Conversion {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(PROPERTIES); }
+	}
+
+	@State(Scope.Thread)
+	public static class BeforeClasses extends Conversion {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(CLASSES); }
+	}
+
+	@State(Scope.Thread)
+	public static class BeforeRestrictions extends Conversion {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(RESTRICTIONS); }
+	}
+
+	@State(Scope.Thread)
+	public static class BeforeSave extends Conversion {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(SAVE); }
+	}
+
+
+	@Benchmark
+	public IOntology load(BeforeLoad s) throws Exception {
+		s.source = s.converter.loadSource(s.sourceFile);
+		s.target = s.converter.createTarget(s.source,s.targetDir,s.targetURI);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology copyProperties(BeforeProperties s){
+		s.converter.copyProperties(s.source,s.target);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology copyClasses(BeforeClasses s){
+		s.converter.copyClasses(s.source,s.target);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology copyRestrictions(BeforeRestrictions s){
+		s.converter.copyRestrictions(s.source,s.target);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology save(BeforeSave s) throws Exception {
+		s.converter.save(s.source,s.target);
+		return s.target;
+	}
+}
@@ -0,0 +1,226 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
+
+/**
+ * phase by phase timing of GenerateModelOntology.convertModel() and
+ * GenerateModelOntology.convertDomainOntology() with NLP ontologies against cancer model
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GenerateModelOntologyBenchmark {
+	// convertModel() copies classes before properties, convertDomainOntology() does the opposite
+	static final int LOAD = 0, MODEL_CLASSES = 1, MODEL_PROPERTIES = 2, DOMAIN_PROPERTIES = 1, DOMAIN_CLASSES = 2, RESTRICTIONS = 3, SAVE = 4;
+	static final String MODEL = "cancer_models/cancer.owl";
+
+	/**
+	 * fresh generator with NLP source and cancer model copied into a workspace
+	 */
+	@State(Scope.Thread)
+	public static abstract class Generation {
+		@Param({"deepphe/nlpOvarian.owl","deepphe/nlpMelanoma.owl"})
+		public String ontology;
+
+		BenchmarkWorkspace workspace;
+		GenerateModelOntology generator;
+		File sourceFile, modelFile;
+		OOntology source, target;
+
+		void copy() throws Exception {
+			workspace = new BenchmarkWorkspace();
+			workspace.copy("source",ontology);
+			workspace.copy("model",MODEL);
+			sourceFile = workspace.getFile("source",ontology);
+			modelFile = workspace.getFile("model",MODEL);
+			generator = new GenerateModelOntology();
+		}
+
+		@TearDown(Level.Invocation)
+		public void tearDown(){
+			workspace.delete();
+		}
+	}
+
+	/**
+	 * convertModel() that has been run up to (but not including) a given phase
+	 */
+	@State(Scope.Thread)
+	public static abstract class ModelGeneration extends Generation {
+		void prepare(int phase) throws Exception {
+			copy();
+			if(phase > LOAD)
+				loadModel(this);
+			if(phase > MODEL_CLASSES)
+				generator.copyModelClasses(source,target);
+			if(phase > MODEL_PROPERTIES)
+				generator.copyProperties(source,target);
+			if(phase > RESTRICTIONS)
+				generator.copyRestrictions(source,target);
+		}
+	}
+
+	/**
+	 * convertDomainOntology() that has been run up to (but not including) a given phase
+	 */
+	@State(Scope.Thread)
+	public static abstract class DomainGeneration extends Generation {
+		File targetFile;
+
+		void prepare(int phase) throws Exception {
+			copy();
+			// nlpOvarian.owl -> ovarianCancer.owl
+			String domain = sourceFile.getName().replaceAll("^nlp|\\.owl$","");
+			targetFile = new File(sourceFile.getParentFile(),Character.toLowerCase(domain.charAt(0))+domain.substring(1)+"Cancer.owl");
+			if(phase > LOAD)
+				loadDomain(this);
+			if(phase > DOMAIN_PROPERTIES)
+				generator.copyProperties(source,target);
+			if(phase > DOMAIN_CLASSES)
+				generator.copyDomainClasses(source,target);
+			if(phase > RESTRICTIONS)
+				generator.copyRestrictions(source,target);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class ModelBeforeLoad extends ModelGeneration {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(LOAD); }
+	}
+
+	@State(Scope.Thread)
+	public static class ModelBeforeClasses extends ModelGeneration {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(MODEL_CLASSES); }
+	}
+
+	@State(Scope.Thread)
+	public static class ModelBeforeProperties extends ModelGeneration {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(MODEL_PROPERTIES); }
+	}
+
+	@State(Scope.Thread)
+	public static class ModelBeforeRestrictions extends ModelGeneration {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(RESTRICTIONS); }
+	}
+
+	@State(Scope.Thread)
+	public static class ModelBeforeSave extends ModelGeneration {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(SAVE); }
+	}
+
+	@State(Scope.Thread)
+	public static class DomainBeforeLoad extends DomainGeneration {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(LOAD); }
+	}
+
+	@State(Scope.Thread)
+	public static class DomainBeforeProperties extends DomainGeneration {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(DOMAIN_PROPERTIES); }
+	}
+
+	@State(Scope.Thread)
+	public static class DomainBeforeClasses extends DomainGeneration {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(DOMAIN_CLASSES); }
+	}
+
+	@State(Scope.Thread)
+	public static class DomainBeforeRestrictions extends DomainGeneration {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(RESTRICTIONS); }
+	}
+
+	@State(Scope.Thread)
+	public static class DomainBeforeSave extends DomainGeneration {
+		@Setup(Level.Invocation)
+		public void setup() throws Exception { prepare(SAVE); }
+	}
+
+	private static void loadModel(Generation s) throws Exception {
+		s.source = OOntology.loadOntology(s.sourceFile);
+		s.target = OOntology.loadOntology(s.modelFile);
+		s.generator.loadNameMap(s.target);
+	}
+
+	private static void loadDomain(DomainGeneration s) throws Exception {
+		s.source = OOntology.loadOntology(s.sourceFile);
+		s.target = s.generator.createDomainOntology(s.targetFile,s.modelFile);
+		s.generator.loadNameMap(s.target);
+	}
+
+
+	@Benchmark
+	public IOntology modelLoad(ModelBeforeLoad s) throws Exception {
+		loadModel(s);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology modelCopyClasses(ModelBeforeClasses s){
+		s.generator.copyModelClasses(s.source,s.target);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology modelCopyProperties(ModelBeforeProperties s){
+		s.generator.copyProperties(s.source,s.target);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology modelCopyRestrictions(ModelBeforeRestrictions s){
+		s.generator.copyRestrictions(s.source,s.target);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology modelSave(ModelBeforeSave s) throws Exception {
+		OntologyWriter.save(s.target);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology domainLoad(DomainBeforeLoad s) throws Exception {
+		loadDomain(s);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology domainCopyProperties(DomainBeforeProperties s){
+		s.generator.copyProperties(s.source,s.target);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology domainCopyClasses(DomainBeforeClasses s){
+		s.generator.copyDomainClasses(s.source,s.target);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology domainCopyRestrictions(DomainBeforeRestrictions s){
+		s.generator.copyRestrictions(s.source,s.target);
+		return s.target;
+	}
+
+	@Benchmark
+	public IOntology domainSave(DomainBeforeSave s) throws Exception {
+		OntologyWriter.save(s.target);
+		return s.target;
+	}
+}
@@ -0,0 +1,104 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.util.Map;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR events of conversion phases and conversion summaries, they show up in a flight recording
+ * (java -XX:StartFlightRecording ...) next to GC and allocation events.
+ * This class lives in its own source directory that the jfr build profile adds on JDK 11 and later,
+ * ConversionMetrics loads it by name only when the JFR API is present in the running JVM,
+ * so the rest of the tools build with --release 8 (mvn -P!jfr) and run on a JVM without JFR.
+ */
+final class ConversionEvents implements ConversionMetrics.Events {
+
+	@Name("org.healthnlp.deepphe.ontologies.ConversionPhase")
+	@Label("Conversion Phase")
+	@Category({"DeepPhe","Ontology Conversion"})
+	@Description("Phase of ontology conversion")
+	static class PhaseEvent extends Event {
+		@Label("Tool")
+		String tool;
+		@Label("Ontology")
+		String ontology;
+		@Label("Phase")
+		String phase;
+	}
+
+	@Name("org.healthnlp.deepphe.ontologies.Conversion")
+	@Label("Conversion")
+	@Category({"DeepPhe","Ontology Conversion"})
+	@Description("Summary of ontology conversion")
+	static class SummaryEvent extends Event {
+		@Label("Tool")
+		String tool;
+		@Label("Ontology")
+		String ontology;
+		@Label("Total Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long totalTime;
+		@Label("Classes Created")
+		long classesCreated;
+		@Label("Classes Reused")
+		long classesReused;
+		@Label("Classes Skipped")
+		long classesSkipped;
+		@Label("Restrictions Copied")
+		long restrictionsCopied;
+		@Label("Restrictions Deduplicated")
+		long restrictionsDeduplicated;
+		@Label("IDs Allocated")
+		long idsAllocated;
+	}
+
+	/**
+	 * start phase event
+	 * @return event to commit when phase ends
+	 */
+	public Object begin(String tool, String ontology, String phase){
+		PhaseEvent e = new PhaseEvent();
+		e.tool = tool;
+		e.ontology = ontology;
+		e.phase = phase;
+		e.begin();
+		return e;
+	}
+
+	/**
+	 * commit phase event
+	 * @param event
+	 */
+	public void commit(Object event){
+		((PhaseEvent)event).commit();
+	}
+
+	/**
+	 * emit conversion summary event
+	 */
+	public void summary(String tool, String ontology, long totalTime, Map<String,Long> counters){
+		SummaryEvent e = new SummaryEvent();
+		if(!e.isEnabled())
+			return;
+		e.tool = tool;
+		e.ontology = ontology;
+		e.totalTime = totalTime;
+		e.classesCreated = get(counters,ConversionMetrics.CLASSES_CREATED);
+		e.classesReused = get(counters,ConversionMetrics.CLASSES_REUSED);
+		e.classesSkipped = get(counters,ConversionMetrics.CLASSES_SKIPPED);
+		e.restrictionsCopied = get(counters,ConversionMetrics.RESTRICTIONS_COPIED);
+		e.restrictionsDeduplicated = get(counters,ConversionMetrics.RESTRICTIONS_DEDUPLICATED);
+		e.idsAllocated = get(counters,ConversionMetrics.IDS_ALLOCATED);
+		e.commit();
+	}
+
+	private static long get(Map<String,Long> counters, String name){
+		Long c = counters.get(name);
+		return (c == null)?0:c;
+	}
+}
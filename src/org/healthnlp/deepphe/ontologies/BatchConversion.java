@@ -0,0 +1,446 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntologyException;
+
+/**
+ * run a batch of ontology conversions listed in a manifest file.
+ * Each line of a manifest is a tab or space separated job, paths are relative to the manifest
+ * <pre>
+ * # tool    source                       target                          model / target URI
+ * model     deepphe/nlpCancer.owl        cancer_models/cancer.owl
+ * domain    deepphe/nlpBreastCancer.owl  cancer_models/breastCancer.owl  cancer_models/cancer.owl
+ * domain    deepphe/nlpMelanoma.owl      cancer_models/melanoma.owl      cancer_models/cancer.owl
+ * convert   deepphe/modelCancer.owl      output/                         http://ontologies.dbmi.pitt.edu/deepphe/cancer/cancer.owl
+ * </pre>
+ * Jobs are linked into a dependency graph: a job waits for every earlier job that writes a file
+ * it reads or writes (a domain waits for its model, a converted ontology waits for the ontologies it imports),
+ * or that reads a file it writes. Independent jobs run in parallel.
+ * With -incremental, each conversion only redoes resources whose content changed since its previous run,
+ * and a conversion whose input files did not change at all is skipped.
+ * With -reachable, model and domain conversions only load source classes they can reach.
+ * With -check, model and domain conversions check the classes they changed for local inconsistencies (see ConsistencyCheck).
+ * With -mappings &lt;file&gt;, all conversions share a mapping registry and source ontologies are left untouched,
+ * every conversion works in its own registry transaction.
+ * With -metrics &lt;file&gt;, phase times and counters of every conversion are written there as JSON.
+ * With -alignments &lt;dir&gt;, model and domain conversions write their alignment tables there (see OntologyAlignment).
+ * Domain jobs against the same model share the axioms of one parse of it (see SharedOntology), so domains
+ * that wait for the same model job run side by side without parsing the model each.
+ */
+public class BatchConversion {
+	public static final String MODEL = "model", DOMAIN = "domain", CONVERT = "convert";
+	private List<Job> jobs;
+	private Map<File,SharedOntology> models = new HashMap<File, SharedOntology>();
+
+	/**
+	 * single conversion
+	 */
+	public static class Job {
+		String tool, targetURI;
+		File source, target, model;
+		Set<File> inputs = new LinkedHashSet<File>(), outputs = new LinkedHashSet<File>();
+		List<Job> dependencies = new ArrayList<Job>();
+		boolean incremental, reachableOnly, checkConsistency;
+		MappingRegistry mappings;
+		OntologyCache cache;
+		File alignments;
+		Map<File,SharedOntology> models;
+		ConversionMetrics metrics;
+
+		Job(String tool, File source, File target, File model, String targetURI) throws IOException{
+			this.tool = tool;
+			this.source = source.getCanonicalFile();
+			this.target = target.getCanonicalFile();
+			this.model = (model == null)?null:model.getCanonicalFile();
+			this.targetURI = targetURI;
+
+			inputs.add(this.source);
+			if(MODEL.equals(tool)){
+				inputs.add(this.target);
+				outputs.add(this.target);
+			}else if(DOMAIN.equals(tool)){
+				inputs.add(this.model);
+				outputs.add(this.target);
+			}else if(CONVERT.equals(tool)){
+				// imported ontologies are looked up in target directory by name
+				for(String iri: new OntologyHeader(this.source).getImports()){
+					inputs.add(new File(this.target,OntologyHeader.getFileName(iri)));
+				}
+				outputs.add(new File(this.target,OntologyHeader.getFileName(targetURI)));
+				// source ontology is saved with new mappings (unless there is a registry)
+				outputs.add(this.source);
+			}else{
+				throw new IOException("Unknown conversion tool: "+tool);
+			}
+		}
+
+		/**
+		 * should this job wait for an earlier job
+		 * @param earlier
+		 * @return
+		 */
+		boolean dependsOn(Job earlier){
+			for(File f: earlier.outputs){
+				if(inputs.contains(f) || outputs.contains(f))
+					return true;
+			}
+			for(File f: outputs){
+				if(earlier.inputs.contains(f))
+					return true;
+			}
+			return false;
+		}
+
+		/**
+		 * run this conversion with a fresh tool instance
+		 * @throws Exception
+		 */
+		public void run() throws Exception{
+			System.out.println("running: "+this);
+			// conversion commits only its own mappings, what it did not commit is dropped
+			MappingRegistry mappings = (this.mappings != null)?this.mappings.begin():null;
+			try{
+				run(mappings);
+			}finally{
+				if(mappings != null)
+					mappings.close();
+			}
+		}
+
+		private void run(MappingRegistry mappings) throws Exception{
+			if(MODEL.equals(tool) || DOMAIN.equals(tool)){
+				GenerateModelOntology gm = new GenerateModelOntology();
+				gm.setIncremental(incremental);
+				gm.setMappingRegistry(mappings);
+				gm.setReachableOnly(reachableOnly);
+				gm.setOntologyCache(cache);
+				gm.setConsistencyCheck(checkConsistency);
+				gm.setAlignmentDirectory(alignments);
+				if(DOMAIN.equals(tool))
+					gm.setSharedModel(getSharedModel());
+				try{
+					if(MODEL.equals(tool))
+						gm.convertModel(source,target);
+					else
+						gm.convertDomainOntology(source,target,model);
+				}catch(Exception e){
+					uncache();
+					throw e;
+				}finally{
+					metrics = gm.getMetrics();
+				}
+			}else if(CONVERT.equals(tool)){
+				ConvertOntologyURIs c = new ConvertOntologyURIs();
+				c.setIncremental(incremental);
+				c.setMappingRegistry(mappings);
+				c.setOntologyCache(cache);
+				try{
+					c.convert(source,target,targetURI);
+				}catch(Exception e){
+					uncache();
+					throw e;
+				}finally{
+					metrics = c.getMetrics();
+				}
+			}
+		}
+
+		/**
+		 * model that all domain jobs of a batch share, parsed again only when its file changed
+		 * @return
+		 * @throws IOntologyException
+		 */
+		private SharedOntology getSharedModel() throws IOntologyException{
+			synchronized(models){
+				SharedOntology m = models.get(model);
+				if(m == null || !m.isCurrent()){
+					m = SharedOntology.load(model);
+					models.put(model,m);
+				}
+				return m;
+			}
+		}
+
+		/**
+		 * source in memory may be half way changed by a failed conversion
+		 */
+		private void uncache(){
+			if(cache != null)
+				cache.remove(source);
+		}
+
+		/**
+		 * files this conversion reads
+		 * @return
+		 */
+		public Set<File> getInputs() {
+			return inputs;
+		}
+
+		/**
+		 * files this conversion writes
+		 * @return
+		 */
+		public Set<File> getOutputs() {
+			return outputs;
+		}
+
+		public List<Job> getDependencies() {
+			return dependencies;
+		}
+
+		/**
+		 * phase times and counters of this conversion
+		 * @return metrics or null if job did not run
+		 */
+		public ConversionMetrics getMetrics() {
+			return metrics;
+		}
+
+		public String toString(){
+			return tool+" "+source.getName()+" -> "+target.getName();
+		}
+	}
+
+	/**
+	 * load manifest
+	 * @param manifest
+	 * @throws IOException
+	 */
+	public BatchConversion(File manifest) throws IOException{
+		jobs = new ArrayList<Job>();
+		File dir = manifest.getAbsoluteFile().getParentFile();
+		BufferedReader reader = new BufferedReader(new FileReader(manifest));
+		try{
+			for(String line = reader.readLine(); line != null; line = reader.readLine()){
+				line = line.trim();
+				if(line.length() == 0 || line.startsWith("#"))
+					continue;
+				String [] p = line.split("\\s+");
+				if(p.length < 3)
+					throw new IOException("Invalid manifest entry: "+line);
+				String tool = p[0].toLowerCase();
+				File model = null;
+				String targetURI = null;
+				if(DOMAIN.equals(tool)){
+					if(p.length < 4)
+						throw new IOException("Domain conversion needs a model: "+line);
+					model = resolve(dir,p[3]);
+				}else if(CONVERT.equals(tool)){
+					if(p.length < 4)
+						throw new IOException("Conversion needs a target URI: "+line);
+					targetURI = p[3];
+				}
+				addJob(new Job(tool,resolve(dir,p[1]),resolve(dir,p[2]),model,targetURI));
+			}
+		}finally{
+			reader.close();
+		}
+	}
+
+	private File resolve(File dir, String path){
+		File f = new File(path);
+		return f.isAbsolute()?f:new File(dir,path);
+	}
+
+	private void addJob(Job job){
+		job.models = models;
+		for(Job j: jobs){
+			if(job.dependsOn(j))
+				job.dependencies.add(j);
+		}
+		jobs.add(job);
+	}
+
+	public List<Job> getJobs() {
+		return jobs;
+	}
+	
+	/**
+	 * only redo resources that changed since previous run of each conversion
+	 * @param incremental
+	 */
+	public void setIncremental(boolean incremental){
+		for(Job job: jobs)
+			job.incremental = incremental;
+	}
+
+	/**
+	 * only load source classes that model and domain conversions can reach
+	 * @param reachableOnly
+	 */
+	public void setReachableOnly(boolean reachableOnly){
+		for(Job job: jobs)
+			job.reachableOnly = reachableOnly;
+	}
+
+	/**
+	 * check what model and domain conversions changed for local inconsistencies
+	 * @param checkConsistency
+	 */
+	public void setConsistencyCheck(boolean checkConsistency){
+		for(Job job: jobs)
+			job.checkConsistency = checkConsistency;
+	}
+
+	/**
+	 * share a mapping registry between all conversions
+	 * @param mappings
+	 */
+	public void setMappingRegistry(MappingRegistry mappings){
+		for(Job job: jobs)
+			job.mappings = mappings;
+	}
+
+	/**
+	 * write alignment tables of model and domain conversions to a directory
+	 * @param dir
+	 */
+	public void setAlignmentDirectory(File dir){
+		for(Job job: jobs)
+			job.alignments = dir;
+	}
+
+	/**
+	 * keep source ontologies loaded between runs of conversions
+	 * @param cache
+	 */
+	public void setOntologyCache(OntologyCache cache){
+		for(Job job: jobs)
+			job.cache = cache;
+	}
+
+	/**
+	 * metrics of conversions that ran
+	 * @return
+	 */
+	public List<ConversionMetrics> getMetrics(){
+		List<ConversionMetrics> metrics = new ArrayList<ConversionMetrics>();
+		for(Job job: jobs){
+			if(job.getMetrics() != null)
+				metrics.add(job.getMetrics());
+		}
+		return metrics;
+	}
+
+	/**
+	 * run all conversions, each job starts as soon as the jobs it depends on are done
+	 * @param threads - number of conversions that can run at the same time
+	 * @throws Exception
+	 */
+	public void run(int threads) throws Exception{
+		run(jobs,threads);
+	}
+
+	/**
+	 * run some of the conversions, dependencies that are not in the list are considered done
+	 * @param selected - jobs to run
+	 * @param threads - number of conversions that can run at the same time
+	 * @throws Exception
+	 */
+	public void run(Collection<Job> selected, int threads) throws Exception{
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try{
+			Map<Job,CompletableFuture<Void>> futures = new LinkedHashMap<Job,CompletableFuture<Void>>();
+			for(final Job job: jobs){
+				if(!selected.contains(job))
+					continue;
+				List<CompletableFuture<Void>> deps = new ArrayList<CompletableFuture<Void>>();
+				for(Job d: job.dependencies){
+					if(futures.containsKey(d))
+						deps.add(futures.get(d));
+				}
+				CompletableFuture<Void> f = allOf(deps).thenRunAsync(new Runnable() {
+					public void run() {
+						try {
+							job.run();
+						} catch (Exception e) {
+							throw new CompletionException(job+" failed",e);
+						}
+					}
+				},pool);
+				futures.put(job,f);
+			}
+			try{
+				allOf(futures.values()).join();
+			}catch(CompletionException e){
+				if(e.getCause() instanceof Exception)
+					throw (Exception) e.getCause();
+				throw e;
+			}
+		}finally{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * future that is done when all futures of a collection are done
+	 * @param futures
+	 * @return
+	 */
+	private static CompletableFuture<Void> allOf(Collection<CompletableFuture<Void>> futures){
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?> [futures.size()]));
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> params = new ArrayList<String>();
+		boolean incremental = false, reachableOnly = false, check = false;
+		MappingRegistry mappings = null;
+		File metrics = null, alignments = null;
+		for(int i=0;i<args.length;i++){
+			if("-incremental".equals(args[i]))
+				incremental = true;
+			else if("-reachable".equals(args[i]))
+				reachableOnly = true;
+			else if("-check".equals(args[i]))
+				check = true;
+			else if("-mappings".equals(args[i]) && i+1 < args.length)
+				mappings = new MappingRegistry(new File(args[++i]));
+			else if("-metrics".equals(args[i]) && i+1 < args.length)
+				metrics = new File(args[++i]);
+			else if("-alignments".equals(args[i]) && i+1 < args.length)
+				alignments = new File(args[++i]);
+			else
+				params.add(args[i]);
+		}
+		if(params.isEmpty()){
+			System.err.println("Usage: java "+BatchConversion.class.getName()+" [-incremental] [-reachable] [-check] [-mappings <registry>] [-metrics <json>] [-alignments <dir>] <manifest> [threads]");
+			return;
+		}
+		int threads = (params.size() > 1)?Integer.parseInt(params.get(1)):Runtime.getRuntime().availableProcessors();
+		BatchConversion batch = new BatchConversion(new File(params.get(0)));
+		batch.setIncremental(incremental);
+		batch.setReachableOnly(reachableOnly);
+		batch.setConsistencyCheck(check);
+		batch.setMappingRegistry(mappings);
+		batch.setAlignmentDirectory(alignments);
+		for(Job job: batch.getJobs()){
+			System.out.println(job+" depends on "+job.getDependencies());
+		}
+		try{
+			batch.run(threads);
+		}finally{
+			if(mappings != null)
+				mappings.close();
+			if(metrics != null)
+				ConversionMetrics.write(batch.getMetrics(),metrics);
+		}
+		System.out.println("done");
+	}
+}
@@ -0,0 +1,293 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jdbm.DB;
+import org.apache.jdbm.DBMaker;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+
+/**
+ * JDBM store of source resource content hashes and target resources they were converted to.
+ * A conversion asks whether a source resource changed since the previous run, resources
+ * that did not change and whose target still exists can be linked instead of copied again.
+ * It also remembers which target resources a conversion created and signatures of restrictions it copied
+ * for every source class, so an incremental run can take out exactly what a previous run put in.
+ * Input files of a conversion are recorded by their snapshot hash (see OntologySnapshot.hash()), so a run whose
+ * inputs did not change at all can be skipped without parsing them.
+ * New hashes are only written on commit(), so a failed run does not poison the store.
+ */
+public class ChangeStore {
+	public static final String SUFFIX = ".changes";
+	private static final String HASHES = "hashes", TARGETS = "targets", RESTRICTIONS = "restrictions", CREATED = "created", INPUTS = "inputs";
+	private DB db;
+	private Map<String,Long> hashes;
+	private Map<String,String> targets;
+	private Map<String,String> restrictions;
+	private Map<String,String> created;
+	private Map<String,String> inputs;
+	private Map<String,Long> current;
+	private Map<String,String> converted;
+	private Map<String,String> copied;
+	private Set<String> added, deleted;
+	private File [] inputFiles = new File [0];
+
+	/**
+	 * open (or create) change store next to a target ontology file
+	 * @param targetFile
+	 */
+	public ChangeStore(File targetFile){
+		db = DBMaker.openFile(targetFile.getAbsolutePath()+SUFFIX).disableLocking().useRandomAccessFile().make();
+		hashes = getMap(HASHES);
+		targets = getMap(TARGETS);
+		restrictions = getMap(RESTRICTIONS);
+		created = getMap(CREATED);
+		inputs = getMap(INPUTS);
+		current = new HashMap<String, Long>();
+		converted = new HashMap<String, String>();
+		copied = new HashMap<String, String>();
+		added = new HashSet<String>();
+		deleted = new HashSet<String>();
+	}
+
+	private <V> Map<String,V> getMap(String name){
+		Map<String,V> map = db.getTreeMap(name);
+		if(map == null)
+			map = db.createTreeMap(name);
+		return map;
+	}
+
+	/**
+	 * content hash of source resource in this run
+	 * @param source
+	 * @return
+	 */
+	private synchronized long getHash(IResource source){
+		String key = ""+source.getURI();
+		Long h = current.get(key);
+		if(h == null){
+			h = ContentHash.hash(source);
+			current.put(key,h);
+		}
+		return h;
+	}
+
+	/**
+	 * did source resource change (or appear) since the previous run
+	 * @param source
+	 * @return
+	 */
+	public synchronized boolean isChanged(IResource source){
+		Long previous = hashes.get(""+source.getURI());
+		return previous == null || previous.longValue() != getHash(source);
+	}
+
+	/**
+	 * name of target resource that source was converted to in the previous run
+	 * @param source
+	 * @return name or null
+	 */
+	public String getTarget(IResource source){
+		return getTarget(""+source.getURI());
+	}
+
+	/**
+	 * name of target resource that source was converted to in the previous run
+	 * @param sourceURI
+	 * @return name or null
+	 */
+	public String getTarget(String sourceURI){
+		return targets.get(sourceURI);
+	}
+
+	/**
+	 * record conversion of source resource in this run
+	 * @param source
+	 * @param target
+	 */
+	public synchronized void update(IResource source, IResource target){
+		getHash(source);
+		converted.put(""+source.getURI(),target.getName());
+	}
+
+	/**
+	 * was a source resource converted to target resource in this run
+	 * @param name
+	 * @return
+	 */
+	public synchronized boolean isConverted(String name){
+		return converted.containsValue(name);
+	}
+
+	/**
+	 * signatures of restrictions copied for a source class in the previous run
+	 * @param sourceURI
+	 * @return
+	 */
+	public List<String> getRestrictions(String sourceURI){
+		String s = restrictions.get(sourceURI);
+		if(s == null || s.length() == 0)
+			return new ArrayList<String>();
+		return new ArrayList<String>(Arrays.asList(s.split("\n")));
+	}
+
+	/**
+	 * record signatures of restrictions copied for a source class in this run
+	 * @param source
+	 * @param signatures
+	 */
+	public synchronized void setRestrictions(IResource source, Collection<String> signatures){
+		StringBuilder b = new StringBuilder();
+		for(String sig: signatures)
+			b.append((b.length() > 0)?"\n":"").append(sig);
+		copied.put(""+source.getURI(),b.toString());
+	}
+
+	/**
+	 * record target resource that a conversion created (as opposed to one that was already there)
+	 * @param target
+	 */
+	public synchronized void setCreated(IResource target){
+		added.add(target.getName());
+	}
+
+	/**
+	 * was target resource created by this or a previous conversion
+	 * @param name
+	 * @return
+	 */
+	public synchronized boolean isCreated(String name){
+		return added.contains(name) || created.containsKey(name);
+	}
+
+	/**
+	 * record target resource that was deleted, because its source is gone
+	 * @param name
+	 */
+	public synchronized void setDeleted(String name){
+		deleted.add(name);
+	}
+
+	/**
+	 * URIs of source resources converted in the previous run, that were not converted in this run
+	 * @return
+	 */
+	public List<String> getRemovedSources(){
+		List<String> removed = new ArrayList<String>();
+		for(String uri: targets.keySet()){
+			if(!converted.containsKey(uri))
+				removed.add(uri);
+		}
+		return removed;
+	}
+
+	/**
+	 * names of target resources converted in the previous run,
+	 * whose source resources were not converted in this run
+	 * @return
+	 */
+	public List<String> getRemoved(){
+		List<String> removed = new ArrayList<String>();
+		for(String uri: targets.keySet()){
+			if(!converted.containsKey(uri))
+				removed.add(targets.get(uri));
+		}
+		return removed;
+	}
+
+	/**
+	 * were input files of a conversion (and the local files they import) recorded unchanged by the last
+	 * commit of the change store next to a target ontology
+	 * @param targetFile
+	 * @param files - inputs of the conversion, usually including the target itself
+	 * @return false if target does not exist or an input can not be read
+	 */
+	public static boolean isUnchanged(File targetFile, File ... files){
+		if(!targetFile.exists())
+			return false;
+		ChangeStore store = new ChangeStore(targetFile);
+		try{
+			for(File f: files){
+				String hash = store.inputs.get(f.getCanonicalPath());
+				if(hash == null || !hash.equals(OntologySnapshot.hash(f)))
+					return false;
+			}
+			return files.length > 0;
+		}catch(IOException e){
+			return false;
+		}finally{
+			store.close();
+		}
+	}
+
+	/**
+	 * set input files of this run, they are hashed on commit(), after the run saved its output
+	 * @param files
+	 */
+	public void setInputs(File ... files){
+		inputFiles = files;
+	}
+
+	/**
+	 * replace stored hashes and targets with the ones from this run
+	 */
+	public void commit(){
+		for(String uri: new ArrayList<String>(targets.keySet())){
+			if(!converted.containsKey(uri)){
+				targets.remove(uri);
+				hashes.remove(uri);
+				restrictions.remove(uri);
+			}
+		}
+		for(String uri: converted.keySet()){
+			hashes.put(uri,current.get(uri));
+			targets.put(uri,converted.get(uri));
+		}
+		// classes whose restrictions were not copied again keep the previous signatures
+		for(String uri: copied.keySet())
+			restrictions.put(uri,copied.get(uri));
+		for(String name: added)
+			created.put(name,"");
+		for(String name: deleted)
+			created.remove(name);
+		// inputs that can not be hashed are left out, so the next run is not skipped,
+		// entries are replaced in place: a JDBM tree map loses keys put back right after clear()
+		Map<String,String> hashed = new HashMap<String, String>();
+		try{
+			for(File f: inputFiles)
+				hashed.put(f.getCanonicalPath(),OntologySnapshot.hash(f));
+		}catch(IOException e){
+			hashed.clear();
+		}
+		for(String path: new ArrayList<String>(inputs.keySet())){
+			if(!hashed.containsKey(path))
+				inputs.remove(path);
+		}
+		inputs.putAll(hashed);
+		db.commit();
+	}
+
+	/**
+	 * forget everything recorded by previous runs
+	 */
+	public void clear(){
+		hashes.clear();
+		targets.clear();
+		restrictions.clear();
+		created.clear();
+		inputs.clear();
+	}
+
+	public void close(){
+		db.close();
+	}
+}
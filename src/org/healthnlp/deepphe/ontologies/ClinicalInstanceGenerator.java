@@ -0,0 +1,379 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
+
+/**
+ * generate individuals of model classes from TCGA clinical (biotab) files as N-Triples.
+ * Columns of a transmart mapping spec that have a Class and a Property to Return Value are resolved
+ * against the model once, then the clinical file is streamed row by row and every row is written out
+ * as triples of its own individuals (one per patient and class), so memory does not grow with the file.
+ * Values of data properties are written as literals. Values of object properties are individuals of the model class
+ * whose name or label matches the value, coded values (s.a. ICD-O histology codes of a cancer registry extract) are first
+ * translated with a permissible value (PV) spec that has Filename, Column Number, Original Data Value and New Data Value columns.
+ * Values that do not resolve to a class are skipped and reported once.
+ * Triples are buffered and written in batches of rows.
+ */
+public class ClinicalInstanceGenerator {
+	public static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+	public static final String SUBJECT_ID = "SUBJ_ID";
+	public static final String CATEGORY_CODE = "Category Code";
+	public static final String DATA_LABEL = "Data Label";
+	public static final String SOURCE_COLUMN = "Source Column";
+	public static final String SOURCE_COLUMN_ALTERNATIVE = "Source Column Alternative";
+	public static final String FILENAME = "Filename";
+	public static final String COLUMN_NUMBER = "Column Number";
+	public static final String ORIGINAL_VALUE = "Original Data Value";
+	public static final String NEW_VALUE = "New Data Value";
+	private static final String OMIT = "OMIT";
+	private MappingSpecValidator index;
+	private String base;
+	private List<Mapping> mappings = new ArrayList<Mapping>();
+	private String [] subjectColumns = new String [0];
+	private Map<String,Map<String,String>> values = new HashMap<String, Map<String,String>>();
+	private Set<String> unmapped = new HashSet<String>();
+	private int batchSize = 1000;
+
+	/**
+	 * column of a clinical file mapped to a property of a model class
+	 */
+	private static class Mapping {
+		String [] sourceColumns;
+		String className, classURI, propertyURI;
+		String avsClassName, avsClassURI, avsPropertyURI;
+		String file, columnNumber;
+		boolean objectProperty;
+		int column = -1;
+
+		/**
+		 * local name of individual of a patient
+		 */
+		String getIndividual(String subject){
+			return getName(className)+"_"+subject+((avsClassName != null)?"_"+getName(avsClassName):"");
+		}
+	}
+
+	/**
+	 * load mapping spec and resolve its model columns
+	 * @param model - model ontology s.a. breastCancer.owl
+	 * @param spec - tab delimited (.txt) or Excel (.xlsx) mapping spec
+	 * @throws IOException
+	 */
+	public ClinicalInstanceGenerator(IOntology model, File spec) throws IOException{
+		this(new MappingSpecValidator(model),""+model.getURI(),spec);
+	}
+
+	/**
+	 * load mapping spec and resolve its model columns
+	 * @param index - model class and property index
+	 * @param base - base URI of generated individuals
+	 * @param spec - tab delimited (.txt) or Excel (.xlsx) mapping spec
+	 * @throws IOException
+	 */
+	public ClinicalInstanceGenerator(MappingSpecValidator index, String base, File spec) throws IOException{
+		this.index = index;
+		this.base = base.endsWith("#")?base:base+"#";
+		loadSpec(spec);
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * load permissible value spec that translates coded values of spec columns to names of model classes
+	 * @param spec - tab delimited (.txt) or Excel (.xlsx) PV spec
+	 * @throws IOException
+	 */
+	public void loadValues(File spec) throws IOException{
+		MappingSpecValidator.Rows rows = MappingSpecValidator.openRows(spec);
+		try{
+			List<String> header = rows.next();
+			if(header == null)
+				return;
+			int file = MappingSpecValidator.indexOf(header,FILENAME);
+			int column = MappingSpecValidator.indexOf(header,COLUMN_NUMBER);
+			int original = MappingSpecValidator.indexOf(header,ORIGINAL_VALUE);
+			int value = MappingSpecValidator.indexOf(header,NEW_VALUE);
+			for(List<String> row = rows.next(); row != null; row = rows.next()){
+				String key = getValueKey(MappingSpecValidator.get(row,file),MappingSpecValidator.get(row,column));
+				Map<String,String> map = values.get(key);
+				if(map == null){
+					map = new HashMap<String, String>();
+					values.put(key,map);
+				}
+				map.put(MappingSpecValidator.get(row,original).trim(),unquote(MappingSpecValidator.get(row,value).trim()));
+			}
+		}finally{
+			rows.close();
+		}
+	}
+
+	private static String getValueKey(String file, String column){
+		return file.trim()+"\t"+column.trim();
+	}
+
+	/**
+	 * tab delimited exports quote values with commas
+	 */
+	private static String unquote(String value){
+		if(value.length() > 1 && value.startsWith("\"") && value.endsWith("\""))
+			return value.substring(1,value.length()-1);
+		return value;
+	}
+
+	/**
+	 * number of spec columns that are mapped to the model
+	 * @return
+	 */
+	public int getMappingCount(){
+		return mappings.size();
+	}
+
+	private void loadSpec(File spec) throws IOException{
+		MappingSpecValidator.Rows rows = MappingSpecValidator.openRows(spec);
+		try{
+			List<String> header = rows.next();
+			if(header == null)
+				return;
+			int category = MappingSpecValidator.indexOf(header,CATEGORY_CODE);
+			int label = MappingSpecValidator.indexOf(header,DATA_LABEL);
+			int source = MappingSpecValidator.indexOf(header,SOURCE_COLUMN);
+			int alternative = MappingSpecValidator.indexOf(header,SOURCE_COLUMN_ALTERNATIVE);
+			int cls = MappingSpecValidator.indexOf(header,MappingSpecValidator.CLASS);
+			int avs = MappingSpecValidator.indexOf(header,MappingSpecValidator.REQUIRED_AVS);
+			int prop = MappingSpecValidator.indexOf(header,MappingSpecValidator.PROPERTY);
+			int file = MappingSpecValidator.indexOf(header,FILENAME);
+			int number = MappingSpecValidator.indexOf(header,COLUMN_NUMBER);
+			for(List<String> row = rows.next(); row != null; row = rows.next()){
+				if(OMIT.equalsIgnoreCase(MappingSpecValidator.get(row,category)))
+					continue;
+				String [] sourceColumns = new String [] {MappingSpecValidator.get(row,source),MappingSpecValidator.get(row,alternative)};
+				if(SUBJECT_ID.equals(MappingSpecValidator.get(row,label))){
+					subjectColumns = sourceColumns;
+					continue;
+				}
+				String className = MappingSpecValidator.get(row,cls);
+				String propertyName = MappingSpecValidator.get(row,prop);
+				if(className.length() == 0 || propertyName.length() == 0)
+					continue;
+				Mapping m = new Mapping();
+				m.sourceColumns = sourceColumns;
+				m.className = className;
+				m.classURI = index.getClassURI(className);
+				m.propertyURI = index.getPropertyURI(propertyName);
+				m.objectProperty = m.propertyURI != null && index.isObjectProperty(m.propertyURI);
+				m.file = MappingSpecValidator.get(row,file);
+				m.columnNumber = MappingSpecValidator.get(row,number);
+				String restriction = MappingSpecValidator.get(row,avs);
+				boolean resolved = m.classURI != null && m.propertyURI != null;
+				if(restriction.length() > 0){
+					String [] p = MappingSpecValidator.RESTRICTION.split(restriction,2);
+					m.avsPropertyURI = index.getPropertyURI(p[0]);
+					if(p.length > 1){
+						m.avsClassName = p[1];
+						m.avsClassURI = index.getClassURI(p[1]);
+					}
+					resolved &= m.avsPropertyURI != null && (p.length == 1 || m.avsClassURI != null);
+				}
+				if(resolved)
+					mappings.add(m);
+				else
+					System.out.println("skipping column "+sourceColumns[0]+", unresolved "+className+" "+restriction+" "+propertyName);
+			}
+		}finally{
+			rows.close();
+		}
+	}
+
+	/**
+	 * stream clinical file and write individuals of its rows
+	 * @param data - tab delimited clinical file with column names in the first row
+	 * @param out - N-Triples output
+	 * @return number of rows that were converted
+	 * @throws IOException
+	 */
+	public long generate(File data, Writer out) throws IOException{
+		MappingSpecValidator.Rows rows = MappingSpecValidator.openRows(data);
+		try{
+			List<String> header = rows.next();
+			if(header == null)
+				return 0;
+			int subject = indexOf(header,subjectColumns);
+			List<Mapping> columns = new ArrayList<Mapping>();
+			for(Mapping m: mappings){
+				m.column = indexOf(header,m.sourceColumns);
+				if(m.column > -1)
+					columns.add(m);
+				else
+					System.out.println("skipping column "+m.sourceColumns[0]+", not in "+data.getName());
+			}
+
+			StringBuilder batch = new StringBuilder();
+			Set<String> typed = new HashSet<String>();
+			long count = 0, n = 0;
+			for(List<String> row = rows.next(); row != null; row = rows.next()){
+				n++;
+				if(isHeader(row,subject))
+					continue;
+				String id = (subject > -1)?getName(MappingSpecValidator.get(row,subject)):"";
+				if(id.length() == 0)
+					id = "row"+n;
+				typed.clear();
+				for(Mapping m: columns){
+					String value = MappingSpecValidator.get(row,m.column);
+					if(isMissing(value))
+						continue;
+					String valueURI = m.objectProperty?getValueClassURI(m,value):null;
+					if(m.objectProperty && valueURI == null)
+						continue;
+					String individual = base+m.getIndividual(id);
+					if(typed.add(individual)){
+						triple(batch,individual,RDF_TYPE,m.classURI);
+						if(m.avsPropertyURI != null && m.avsClassURI != null){
+							String restriction = base+getName(m.avsClassName)+"_"+getName(m.className)+"_"+id;
+							triple(batch,individual,m.avsPropertyURI,restriction);
+							if(typed.add(restriction))
+								triple(batch,restriction,RDF_TYPE,m.avsClassURI);
+						}
+					}
+					if(m.objectProperty){
+						String object = individual+"_"+getName(valueURI.substring(Math.max(valueURI.lastIndexOf('#'),valueURI.lastIndexOf('/'))+1));
+						triple(batch,individual,m.propertyURI,object);
+						if(typed.add(object))
+							triple(batch,object,RDF_TYPE,valueURI);
+					}else{
+						batch.append('<').append(individual).append("> <").append(m.propertyURI).append("> ");
+						literal(batch,value);
+						batch.append(" .\n");
+					}
+				}
+				count++;
+				if(count % batchSize == 0){
+					out.write(batch.toString());
+					batch.setLength(0);
+				}
+			}
+			out.write(batch.toString());
+			out.flush();
+			return count;
+		}finally{
+			rows.close();
+		}
+	}
+
+	/**
+	 * model class of a value of an object property, coded values are translated with the PV spec first
+	 * @param m
+	 * @param value
+	 * @return class URI or null if value does not resolve to a single class
+	 */
+	private String getValueClassURI(Mapping m, String value){
+		Map<String,String> map = values.get(getValueKey(m.file,m.columnNumber));
+		String name = (map != null && map.containsKey(value.trim()))?map.get(value.trim()):value;
+		String uri = index.getClassURI(name);
+		if(uri == null && unmapped.add(m.sourceColumns[0]+"\t"+value))
+			System.out.println("skipping value "+value+" of column "+m.sourceColumns[0]+", no model class for "+name);
+		return uri;
+	}
+
+	/**
+	 * TCGA biotab files repeat column names and CDE IDs in the rows after the header
+	 */
+	private boolean isHeader(List<String> row, int subject){
+		String value = MappingSpecValidator.get(row,subject);
+		if(value.startsWith("CDE_ID:"))
+			return true;
+		for(String s: subjectColumns){
+			if(s.length() > 0 && s.equals(value))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * empty value or TCGA null flavor s.a. [Not Available]
+	 */
+	private static boolean isMissing(String value){
+		return value.length() == 0 || (value.startsWith("[") && value.endsWith("]"));
+	}
+
+	private static int indexOf(List<String> header, String [] names){
+		for(String name: names){
+			if(name.length() > 0){
+				int i = MappingSpecValidator.indexOf(header,name);
+				if(i > -1)
+					return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * name that can be used in URI
+	 */
+	private static String getName(String s){
+		StringBuilder b = new StringBuilder(s.length());
+		for(int i=0;i<s.length();i++){
+			char c = s.charAt(i);
+			b.append((Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.')?c:'_');
+		}
+		return b.toString();
+	}
+
+	private static void triple(StringBuilder b, String subject, String predicate, String object){
+		b.append('<').append(subject).append("> <").append(predicate).append("> <").append(object).append("> .\n");
+	}
+
+	/**
+	 * N-Triples string literal
+	 */
+	private static void literal(StringBuilder b, String value){
+		b.append('"');
+		for(int i=0;i<value.length();i++){
+			char c = value.charAt(i);
+			switch(c){
+			case '"': b.append("\\\""); break;
+			case '\\': b.append("\\\\"); break;
+			case '\n': b.append("\\n"); break;
+			case '\r': b.append("\\r"); break;
+			case '\t': b.append("\\t"); break;
+			default: b.append(c);
+			}
+		}
+		b.append('"');
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 4){
+			System.err.println("Usage: java "+ClinicalInstanceGenerator.class.getName()+" <model ontology> <mapping spec> <clinical file> <output.nt> [PV mapping spec]");
+			System.err.println("Ex: java "+ClinicalInstanceGenerator.class.getName()+" cancer_models/breastCancer.owl mapping/transmart-tcga-brca-mapping-spec.txt nationwidechildrens.org_clinical_patient_brca.txt brca.nt");
+			return;
+		}
+		long time = System.currentTimeMillis();
+		ClinicalInstanceGenerator generator = new ClinicalInstanceGenerator(OOntology.loadOntology(new File(args[0])),new File(args[1]));
+		if(args.length > 4)
+			generator.loadValues(new File(args[4]));
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[3]),"UTF-8"));
+		long count;
+		try{
+			count = generator.generate(new File(args[2]),out);
+		}finally{
+			out.close();
+		}
+		System.out.println("converted "+count+" rows through "+generator.getMappingCount()+" mapped columns in "+(System.currentTimeMillis()-time)+" ms");
+	}
+}
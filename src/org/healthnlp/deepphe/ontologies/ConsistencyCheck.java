@@ -0,0 +1,320 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.ILogicExpression;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+import edu.pitt.dbmi.nlp.noble.ontology.IRestriction;
+
+/**
+ * local consistency check of classes that a conversion changed, without running a reasoner.
+ * Classes that were created, linked to a new parent or got new restrictions are recorded while
+ * a conversion runs, then they and their sub-classes (which inherit the change) are checked:
+ * <ul>
+ * <li>domain - a class has a restriction on a property whose domain it is not under
+ * <li>range - a restriction filler is not under the range of its property
+ * <li>disjoint - a class is under two classes that are disjoint
+ * <li>empty - a restriction lost its property or filler when it was copied
+ * </ul>
+ * Ancestors and descendants come from a HierarchyIndex, so each check only looks at the affected part of the hierarchy.
+ * Each check is timed separately.
+ */
+public class ConsistencyCheck {
+	public static final String DOMAIN = "domain", RANGE = "range", DISJOINT = "disjoint", EMPTY = "empty";
+	public static final String [] CHECKS = new String [] {DOMAIN,RANGE,DISJOINT,EMPTY};
+	private Map<String,IClass> changed = new LinkedHashMap<String, IClass>();
+	private Map<String,Long> times = new LinkedHashMap<String, Long>();
+	private List<Problem> problems = new ArrayList<Problem>();
+	private HierarchyIndex hierarchy;
+	private int checked;
+
+	/**
+	 * inconsistency found in a class
+	 */
+	public static class Problem {
+		private String type, message;
+		private IClass cls;
+
+		Problem(String type, IClass cls, String message){
+			this.type = type;
+			this.cls = cls;
+			this.message = message;
+		}
+
+		/**
+		 * domain, range, disjoint or empty
+		 * @return
+		 */
+		public String getType() {
+			return type;
+		}
+
+		public IClass getIClass() {
+			return cls;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public String toString(){
+			return type+"\t"+getName(cls)+"\t"+message;
+		}
+	}
+
+	/**
+	 * record a class that was changed by a conversion
+	 * @param cls
+	 */
+	public synchronized void addChanged(IClass cls){
+		if(cls != null)
+			changed.put(key(cls),cls);
+	}
+
+	/**
+	 * number of changed classes recorded so far
+	 * @return
+	 */
+	public synchronized int getChangedCount(){
+		return changed.size();
+	}
+
+	private static String key(IClass cls){
+		return ""+cls.getURI();
+	}
+
+	private static String getName(IClass cls){
+		String label = LabelIndex.getDisplayName(cls);
+		return label.equals(cls.getName())?label:cls.getName()+" ("+label+")";
+	}
+
+	/**
+	 * changed classes and all of their sub-classes
+	 * @return
+	 */
+	List<IClass> getAffectedClasses(){
+		Map<String,IClass> affected = new LinkedHashMap<String, IClass>();
+		for(IClass cls: changed.values()){
+			if(affected.containsKey(key(cls)))
+				continue;
+			affected.put(key(cls),cls);
+			for(IClass c: hierarchy.getSubClasses(cls))
+				affected.put(key(c),c);
+		}
+		return new ArrayList<IClass>(affected.values());
+	}
+
+	/**
+	 * check changed part of hierarchy
+	 * @param hierarchy - hierarchy of changed ontology
+	 * @param metrics - where each check is recorded as a phase, can be null
+	 * @return problems that were found
+	 */
+	public synchronized List<Problem> check(HierarchyIndex hierarchy, ConversionMetrics metrics){
+		this.hierarchy = hierarchy;
+		if(metrics != null)
+			metrics.phase("check");
+		problems.clear();
+		times.clear();
+		List<IClass> classes = getAffectedClasses();
+		checked = classes.size();
+
+		// restrictions are looked up once for domain, range and empty checks
+		Map<String,List<IRestriction>> restrictions = new HashMap<String, List<IRestriction>>();
+		for(IClass cls: classes){
+			List<IRestriction> list = new ArrayList<IRestriction>();
+			addRestrictions(cls.getEquivalentRestrictions(),list);
+			addRestrictions(cls.getDirectNecessaryRestrictions(),list);
+			restrictions.put(key(cls),list);
+		}
+
+		Map<String,IClass []> disjoint = new HashMap<String, IClass[]>();
+		for(String check: CHECKS){
+			if(metrics != null)
+				metrics.phase("check "+check);
+			long time = System.nanoTime();
+			for(IClass cls: classes){
+				List<IRestriction> list = restrictions.get(key(cls));
+				if(DOMAIN.equals(check))
+					checkDomain(cls,list);
+				else if(RANGE.equals(check))
+					checkRange(cls,list);
+				else if(DISJOINT.equals(check))
+					checkDisjoint(cls,disjoint);
+				else if(EMPTY.equals(check))
+					checkEmpty(cls,list);
+			}
+			times.put(check,System.nanoTime()-time);
+		}
+		return problems;
+	}
+
+	/**
+	 * top level restrictions of a class expression
+	 */
+	private static void addRestrictions(ILogicExpression exp, List<IRestriction> list){
+		if(exp == null)
+			return;
+		for(Object o: exp){
+			if(o instanceof IRestriction)
+				list.add((IRestriction) o);
+			else if(o instanceof ILogicExpression)
+				addRestrictions((ILogicExpression) o,list);
+		}
+	}
+
+	/**
+	 * is class the same as or a sub-class of a parent, unknown classes are given the benefit of the doubt
+	 */
+	private boolean isA(IClass cls, IClass parent){
+		if(key(cls).equals(key(parent)) || parent.equals(hierarchy.getRoot()))
+			return true;
+		if(!hierarchy.contains(cls) || !hierarchy.contains(parent))
+			return true;
+		return hierarchy.isSubClassOf(cls,parent);
+	}
+
+	private boolean isA(IClass cls, IClass [] parents){
+		for(IClass p: parents){
+			if(isA(cls,p))
+				return true;
+		}
+		return false;
+	}
+
+	private void checkDomain(IClass cls, List<IRestriction> restrictions){
+		for(IRestriction r: restrictions){
+			IProperty p = r.getProperty();
+			if(p == null)
+				continue;
+			IClass [] domain = p.getDomain();
+			if(domain != null && domain.length > 0 && !isA(cls,domain))
+				problems.add(new Problem(DOMAIN,cls,"restriction on "+p.getName()+" outside of its domain "+getNames(domain)));
+		}
+	}
+
+	private void checkRange(IClass cls, List<IRestriction> restrictions){
+		for(IRestriction r: restrictions){
+			IProperty p = r.getProperty();
+			if(p == null || r.getParameter() == null || !p.isObjectProperty())
+				continue;
+			if(r.getRestrictionType() != IRestriction.SOME_VALUES_FROM && r.getRestrictionType() != IRestriction.ALL_VALUES_FROM)
+				continue;
+			List<IClass> range = new ArrayList<IClass>();
+			if(p.getRange() != null){
+				for(Object o: p.getRange()){
+					if(o instanceof IClass && !(o instanceof IRestriction))
+						range.add((IClass) o);
+				}
+			}
+			if(range.isEmpty())
+				continue;
+			IClass [] ranges = range.toArray(new IClass [0]);
+			for(IClass filler: getFillers(r.getParameter(),new ArrayList<IClass>())){
+				if(!isA(filler,ranges))
+					problems.add(new Problem(RANGE,cls,"filler "+getName(filler)+" of "+p.getName()+" outside of its range "+getNames(ranges)));
+			}
+		}
+	}
+
+	/**
+	 * named classes of a restriction filler, negated classes are left out
+	 */
+	private static List<IClass> getFillers(ILogicExpression exp, List<IClass> fillers){
+		if(exp.getExpressionType() == ILogicExpression.NOT)
+			return fillers;
+		for(Object o: exp){
+			if(o instanceof ILogicExpression)
+				getFillers((ILogicExpression) o,fillers);
+			else if(o instanceof IClass && !(o instanceof IRestriction))
+				fillers.add((IClass) o);
+		}
+		return fillers;
+	}
+
+	private void checkDisjoint(IClass cls, Map<String,IClass []> disjoint){
+		List<IClass> ancestors = hierarchy.getSuperClasses(cls);
+		ancestors.add(0,cls);
+		for(IClass a: ancestors){
+			IClass [] list = disjoint.get(key(a));
+			if(list == null){
+				list = a.getDisjointClasses();
+				disjoint.put(key(a),(list == null)?new IClass [0]:list);
+			}
+			for(IClass d: disjoint.get(key(a))){
+				if(key(d).equals(key(cls)) || (hierarchy.contains(d) && hierarchy.isSubClassOf(cls,d))){
+					problems.add(new Problem(DISJOINT,cls,"under disjoint classes "+getName(a)+" and "+getName(d)));
+					return;
+				}
+			}
+		}
+	}
+
+	private void checkEmpty(IClass cls, List<IRestriction> restrictions){
+		for(IRestriction r: restrictions){
+			if(r.getProperty() == null)
+				problems.add(new Problem(EMPTY,cls,"restriction without a property"));
+			else if(r.getParameter() == null || r.getParameter().isEmpty())
+				problems.add(new Problem(EMPTY,cls,"restriction on "+r.getProperty().getName()+" without a filler"));
+		}
+	}
+
+	private static String getNames(IClass [] classes){
+		StringBuilder b = new StringBuilder();
+		for(IClass c: classes)
+			b.append((b.length() > 0)?", ":"").append(c.getName());
+		return "["+b+"]";
+	}
+
+	/**
+	 * problems found by last check
+	 * @return
+	 */
+	public List<Problem> getProblems() {
+		return problems;
+	}
+
+	/**
+	 * number of classes looked at by last check
+	 * @return
+	 */
+	public int getCheckedCount(){
+		return checked;
+	}
+
+	/**
+	 * time of a check in milliseconds
+	 * @param check
+	 * @return
+	 */
+	public long getTime(String check){
+		Long t = times.get(check);
+		return (t == null)?0:t/1000000;
+	}
+
+	/**
+	 * write problems and time of every check
+	 * @param w
+	 */
+	public void write(Writer w){
+		PrintWriter out = new PrintWriter(w);
+		for(Problem p: problems)
+			out.println(p);
+		out.println(toString());
+		out.flush();
+	}
+
+	public String toString(){
+		StringBuilder b = new StringBuilder("checked "+checked+" of "+changed.size()+" changed classes, "+problems.size()+" problems (");
+		for(int i=0;i<CHECKS.length;i++)
+			b.append((i > 0)?", ":"").append(CHECKS[i]).append(" ").append(getTime(CHECKS[i])).append(" ms");
+		return b.append(")").toString();
+	}
+}
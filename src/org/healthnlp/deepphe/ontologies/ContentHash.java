@@ -0,0 +1,118 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.ILogicExpression;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+
+/**
+ * content hash of a class or property in canonical form:
+ * annotations, super classes, equivalent and disjoint classes, restrictions,
+ * domain, range and characteristics rendered as sorted lines.
+ * Mapping rdfs:seeAlso values to DP resources are left out, since the tools rewrite them on every run.
+ */
+public class ContentHash {
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final String SEE_ALSO = "http://www.w3.org/2000/01/rdf-schema#seeAlso";
+
+	/**
+	 * 64 bit hash of resource content
+	 * @param r
+	 * @return
+	 */
+	public static long hash(IResource r){
+		return hash(getCanonicalForm(r));
+	}
+
+	/**
+	 * 64 bit hash of content lines
+	 * @param lines - canonical form
+	 * @return
+	 */
+	public static long hash(List<String> lines){
+		long h = FNV_OFFSET;
+		for(String line: lines){
+			h = hash(h,line);
+			h = hash(h,"\n");
+		}
+		return h;
+	}
+
+	private static long hash(long h, String s){
+		for(int i=0;i<s.length();i++){
+			h ^= s.charAt(i);
+			h *= FNV_PRIME;
+		}
+		return h;
+	}
+
+	/**
+	 * canonical form of resource content as sorted lines
+	 * @param r
+	 * @return
+	 */
+	public static List<String> getCanonicalForm(IResource r){
+		return getCanonicalForm(r,false);
+	}
+
+	/**
+	 * canonical form of resource content as sorted lines
+	 * @param r
+	 * @param mappings - keep rdfs:seeAlso values that point to DP resources
+	 * @return
+	 */
+	public static List<String> getCanonicalForm(IResource r, boolean mappings){
+		List<String> lines = new ArrayList<String>();
+		lines.add("resource "+r.getURI());
+		for(IProperty p: r.getProperties()){
+			boolean seeAlso = SEE_ALSO.equals(""+p.getURI());
+			for(Object o: r.getPropertyValues(p)){
+				if(seeAlso && !mappings && o.toString().startsWith(ConvertOntologyURIs.BASE_URL_PREFIX))
+					continue;
+				lines.add("annotation "+p.getURI()+" "+o);
+			}
+		}
+		if(r instanceof IClass){
+			IClass c = (IClass) r;
+			for(IClass s: c.getDirectSuperClasses())
+				lines.add("super "+s.getURI());
+			for(IClass s: c.getEquivalentClasses()){
+				if(!s.equals(c))
+					lines.add("equivalent "+s.getURI());
+			}
+			for(IClass s: c.getDisjointClasses())
+				lines.add("disjoint "+s.getURI());
+			addRestrictions(lines,"equivalent restriction ",c.getEquivalentRestrictions());
+			addRestrictions(lines,"necessary restriction ",c.getDirectNecessaryRestrictions());
+		}else if(r instanceof IProperty){
+			IProperty p = (IProperty) r;
+			lines.add("type "+p.getPropertyType());
+			for(IProperty s: p.getDirectSuperProperties())
+				lines.add("super "+s.getURI());
+			for(IClass s: p.getDomain())
+				lines.add("domain "+s.getURI());
+			for(Object o: p.getRange())
+				lines.add("range "+((o instanceof IResource)?((IResource)o).getURI():o));
+			lines.add("functional "+p.isFunctional());
+			if(p.getPropertyType() == IProperty.OBJECT){
+				lines.add("symmetric "+p.isSymmetric());
+				lines.add("transitive "+p.isTransitive());
+			}
+		}
+		Collections.sort(lines);
+		return lines;
+	}
+
+	private static void addRestrictions(List<String> lines, String prefix, ILogicExpression exp){
+		if(exp == null)
+			return;
+		for(Object o: exp){
+			lines.add(prefix+o);
+		}
+	}
+}
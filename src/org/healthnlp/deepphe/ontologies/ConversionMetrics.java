@@ -0,0 +1,267 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * phase timers and counters of a single conversion.
+ * A conversion moves from one phase to the next with phase(name) and ends with finish(),
+ * every phase is also recorded as a JFR event when the JFR API is available and the events were built (see Events).
+ * Metrics of one or more conversions can be written as JSON.
+ */
+public class ConversionMetrics {
+	public static final String CLASSES_CREATED = "classesCreated";
+	public static final String CLASSES_REUSED = "classesReused";
+	public static final String CLASSES_RECOPIED = "classesRecopied";
+	public static final String CLASSES_SKIPPED = "classesSkipped";
+	public static final String PROPERTIES_CREATED = "propertiesCreated";
+	public static final String PROPERTIES_REUSED = "propertiesReused";
+	public static final String RESTRICTIONS_COPIED = "restrictionsCopied";
+	public static final String RESTRICTIONS_DEDUPLICATED = "restrictionsDeduplicated";
+	public static final String RESTRICTIONS_REMOVED = "restrictionsRemoved";
+	public static final String RESOURCES_DELETED = "resourcesDeleted";
+	public static final String IDS_ALLOCATED = "idsAllocated";
+	public static final String SOURCE_CLASSES = "sourceClasses";
+	public static final String LOADED_CLASSES = "loadedClasses";
+	public static final String CLASSES_CHECKED = "classesChecked";
+	public static final String CONSISTENCY_PROBLEMS = "consistencyProblems";
+	public static final String SOURCES_UNCHANGED = "sourcesUnchanged";
+	private static final Events EVENTS = loadEvents();
+
+	private String tool, ontology;
+	private Map<String,Long> phases = new LinkedHashMap<String, Long>();
+	private Map<String,Long> counters = new LinkedHashMap<String, Long>();
+	private String phase;
+	private long phaseStart, start, end;
+	private Object event;
+
+	/**
+	 * metrics of a conversion
+	 * @param tool - name of conversion tool
+	 * @param ontology - name of ontology being converted
+	 */
+	public ConversionMetrics(String tool, String ontology){
+		this.tool = tool;
+		this.ontology = ontology;
+		start = System.nanoTime();
+	}
+
+	/**
+	 * recorder of conversion events, implemented with JFR by ConversionEvents in the jfr source directory
+	 */
+	interface Events {
+		/**
+		 * start phase event
+		 * @return event to commit when phase ends
+		 */
+		Object begin(String tool, String ontology, String phase);
+
+		/**
+		 * commit phase event
+		 * @param event
+		 */
+		void commit(Object event);
+
+		/**
+		 * emit conversion summary event
+		 */
+		void summary(String tool, String ontology, long totalTime, Map<String,Long> counters);
+	}
+
+	/**
+	 * JFR events, if they were built and the JVM has the JFR API
+	 * @return null otherwise
+	 */
+	private static Events loadEvents(){
+		try{
+			Class.forName("jdk.jfr.Event");
+			return (Events) Class.forName(ConversionMetrics.class.getPackage().getName()+".ConversionEvents").getDeclaredConstructor().newInstance();
+		}catch(Throwable e){
+			return null;
+		}
+	}
+
+	public String getTool() {
+		return tool;
+	}
+
+	public String getOntology() {
+		return ontology;
+	}
+
+	/**
+	 * end current phase (if any) and start a new one
+	 * @param name
+	 */
+	public synchronized void phase(String name){
+		endPhase();
+		phase = name;
+		phaseStart = System.nanoTime();
+		if(EVENTS != null)
+			event = EVENTS.begin(tool,ontology,name);
+	}
+
+	private void endPhase(){
+		if(phase == null)
+			return;
+		long time = System.nanoTime()-phaseStart;
+		Long previous = phases.get(phase);
+		phases.put(phase,(previous == null)?time:previous+time);
+		if(event != null)
+			EVENTS.commit(event);
+		phase = null;
+		event = null;
+	}
+
+	/**
+	 * end last phase and the conversion
+	 */
+	public synchronized void finish(){
+		endPhase();
+		end = System.nanoTime();
+		if(EVENTS != null)
+			EVENTS.summary(tool,ontology,getTotalTime(),new LinkedHashMap<String, Long>(counters));
+	}
+
+	/**
+	 * add one to a counter
+	 * @param counter
+	 */
+	public void increment(String counter){
+		add(counter,1);
+	}
+
+	/**
+	 * add to a counter
+	 * @param counter
+	 * @param n
+	 */
+	public synchronized void add(String counter, long n){
+		Long c = counters.get(counter);
+		counters.put(counter,(c == null)?n:c+n);
+	}
+
+	/**
+	 * value of a counter
+	 * @param counter
+	 * @return
+	 */
+	public synchronized long getCount(String counter){
+		Long c = counters.get(counter);
+		return (c == null)?0:c;
+	}
+
+	/**
+	 * time spent in a phase
+	 * @param phase
+	 * @return nanoseconds
+	 */
+	public synchronized long getTime(String phase){
+		Long t = phases.get(phase);
+		return (t == null)?0:t;
+	}
+
+	/**
+	 * time from start to finish (or until now if conversion is still running)
+	 * @return nanoseconds
+	 */
+	public synchronized long getTotalTime(){
+		return ((end > 0)?end:System.nanoTime())-start;
+	}
+
+	/**
+	 * metrics as JSON object
+	 * @return
+	 */
+	public synchronized String toJSON(){
+		StringBuilder b = new StringBuilder();
+		b.append("{\"tool\":").append(quote(tool));
+		b.append(",\"ontology\":").append(quote(ontology));
+		b.append(",\"totalMillis\":").append(millis(getTotalTime()));
+		b.append(",\"phaseMillis\":{");
+		String s = "";
+		for(String p: phases.keySet()){
+			b.append(s).append(quote(p)).append(":").append(millis(phases.get(p)));
+			s = ",";
+		}
+		b.append("},\"counters\":{");
+		s = "";
+		for(String c: counters.keySet()){
+			b.append(s).append(quote(c)).append(":").append(counters.get(c));
+			s = ",";
+		}
+		b.append("}}");
+		return b.toString();
+	}
+
+	/**
+	 * metrics of several conversions as JSON array
+	 * @param metrics
+	 * @return
+	 */
+	public static String toJSON(Collection<ConversionMetrics> metrics){
+		List<String> list = new ArrayList<String>();
+		for(ConversionMetrics m: metrics)
+			list.add(m.toJSON());
+		StringBuilder b = new StringBuilder("[");
+		for(int i=0;i<list.size();i++){
+			b.append((i > 0)?",\n ":"").append(list.get(i));
+		}
+		return b.append("]\n").toString();
+	}
+
+	/**
+	 * write metrics of several conversions to JSON file
+	 * @param metrics
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(Collection<ConversionMetrics> metrics, File file) throws IOException{
+		Writer w = new OutputStreamWriter(new FileOutputStream(file),"UTF-8");
+		try{
+			w.write(toJSON(metrics));
+		}finally{
+			w.close();
+		}
+	}
+
+	private static String millis(long nanos){
+		return String.format(Locale.ROOT,"%.3f",nanos/1000000.0);
+	}
+
+	private static String quote(String s){
+		if(s == null)
+			return "null";
+		StringBuilder b = new StringBuilder("\"");
+		for(int i=0;i<s.length();i++){
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\')
+				b.append('\\').append(c);
+			else if(c < 0x20)
+				b.append(String.format("\\u%04x",(int)c));
+			else
+				b.append(c);
+		}
+		return b.append('"').toString();
+	}
+
+	/**
+	 * one line summary
+	 */
+	public synchronized String toString(){
+		StringBuilder b = new StringBuilder(tool+" "+ontology+": "+millis(getTotalTime())+" ms");
+		for(String c: counters.keySet()){
+			b.append(", ").append(c).append("=").append(counters.get(c));
+		}
+		return b.toString();
+	}
+}
@@ -2,15 +2,21 @@ package org.healthnlp.deepphe.ontologies;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
 import edu.pitt.dbmi.nlp.noble.ontology.*;
 import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
 
@@ -22,8 +28,51 @@ import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
 public class ConvertOntologyURIs {
 	public static final String URI_FORMAT =  "DP%06d";
 	public static final String BASE_URL_PREFIX = "http://ontologies.dbmi.pitt.edu";
+	public static final String TOOL = "convert";
 	private Map<IOntology,IProperty> seeAlsoMap;
+	private ResourceMap resourceMap = new ResourceMap();
+	private IdentifierAllocator allocator;
+	private ChangeStore changes;
+	private MappingRegistry mappings;
+	private OntologyCache cache;
+	private boolean incremental;
 	private int index;
+	private ConversionMetrics metrics = new ConversionMetrics(TOOL,"");
+	
+	
+	/**
+	 * in incremental mode previous target is updated in place and only source resources
+	 * whose content changed since previous run are copied and restricted again,
+	 * a source that did not change at all (and its target) is not loaded
+	 * @param incremental
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+	
+	/**
+	 * keep source to DP resource mappings in a registry instead of source ontology
+	 * @param mappings
+	 */
+	public void setMappingRegistry(MappingRegistry mappings) {
+		this.mappings = mappings;
+	}
+	
+	/**
+	 * keep source ontologies loaded between conversions, a source is only parsed again when its file changes
+	 * @param cache
+	 */
+	public void setOntologyCache(OntologyCache cache) {
+		this.cache = cache;
+	}
+	
+	/**
+	 * phase times and counters of the last conversion
+	 * @return
+	 */
+	public ConversionMetrics getMetrics() {
+		return metrics;
+	}
 	
 	
 	private IProperty getSeeAlso(IOntology ont){
@@ -46,6 +95,18 @@ public class ConvertOntologyURIs {
 	 * @return
 	 */
 	private String createNewResourceName(IResource source,IOntology target){
+		// check if resource was already mapped in the registry
+		if(mappings != null){
+			String t = mappings.getTarget(source.getURI());
+			if(t != null){
+				try {
+					return new URI(t).getFragment();
+				} catch (URISyntaxException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		
 		// check if existing resource already has an owl:seeAlso
 		for(Object nm : source.getPropertyValues(getSeeAlso(source.getOntology()))){
 			if(nm.toString().startsWith(BASE_URL_PREFIX)){
@@ -58,12 +119,20 @@ public class ConvertOntologyURIs {
 			}
 		}
 		
-		// check if there is already resource with a given name
-		String name = null;
-		do{
-			name = String.format(URI_FORMAT,index++);
-		}while(target.hasResource(name));
-		return name;
+		// pick next identifier that is not used in the target yet
+		if(allocator == null)
+			allocator = new IdentifierAllocator(target,index);
+		metrics.increment(ConversionMetrics.IDS_ALLOCATED);
+		return allocator.nextName();
+	}
+	
+	/**
+	 * a resource was created under a name, make sure the allocator does not hand it out again
+	 * @param name
+	 */
+	private void markUsed(String name){
+		if(allocator != null)
+			allocator.markUsed(name);
 	}
 	
 	/**
@@ -73,13 +142,31 @@ public class ConvertOntologyURIs {
 	 * @return
 	 */
 	private IProperty copyProperty(IProperty sp, IOntology target){
+		// if property was already converted then just return it
+		IProperty tp = (IProperty) resourceMap.get(sp);
+		if(tp != null)
+			return tp;
+		
 		String name = createNewResourceName(sp,target);
 		
 		// if property was already created then just return it
-		if(target.hasResource(name))
-			return target.getProperty(name);
-		
-		IProperty tp = target.createProperty(name,sp.getPropertyType());
+		if(target.hasResource(name)){
+			tp = target.getProperty(name);
+			resourceMap.put(sp,tp);
+			if(!isChanged(sp,tp,target)){
+				if(changes != null && isLocal(tp,target))
+					changes.update(sp,tp);
+				metrics.increment(ConversionMetrics.PROPERTIES_REUSED);
+				return tp;
+			}
+			// property changed since previous run, copy it again
+			clearProperty(tp);
+		}else{
+			tp = target.createProperty(name,sp.getPropertyType());
+			markUsed(name);
+			resourceMap.put(sp,tp);
+		}
+		metrics.increment(ConversionMetrics.PROPERTIES_CREATED);
 		String [] labels = sp.getLabels();
 		if(labels.length == 0){
 			tp.addLabel(sp.getName());
@@ -127,35 +214,133 @@ public class ConvertOntologyURIs {
 		}
 		
 			
-		// save seeAlso property
-		clearSeeAlso(tp);
-		clearSeeAlso(sp);
-		tp.addPropertyValue(getSeeAlso(tp.getOntology()),""+sp.getURI());
-		sp.addPropertyValue(getSeeAlso(sp.getOntology()),""+tp.getURI());
+		// save mapping
+		saveMapping(sp,tp);
+		
+		if(changes != null)
+			changes.update(sp,tp);
 		
 		return tp;
 	}
 	
 	/**
-	 * copy or fetch individual class
+	 * class that is being copied, with related super, equivalent and disjoint classes that still need to be linked
+	 */
+	private static class ClassCopy {
+		static final int SUPER = 0, EQUIVALENT = 1, DISJOINT = 2;
+		IClass source, target;
+		List<IClass> related = new ArrayList<IClass>();
+		List<Integer> relations = new ArrayList<Integer>();
+		int next;
+		
+		ClassCopy(IClass source, IClass target){
+			this.source = source;
+			this.target = target;
+			for(IClass p: source.getDirectSuperClasses())
+				add(p,SUPER);
+			for(IClass eq: source.getEquivalentClasses()){
+				if(!eq.equals(source))
+					add(eq,EQUIVALENT);
+			}
+			for(IClass dc: source.getDisjointClasses())
+				add(dc,DISJOINT);
+		}
+		
+		private void add(IClass cls, int relation){
+			related.add(cls);
+			relations.add(relation);
+		}
+		
+		boolean hasNext(){
+			return next < related.size();
+		}
+	}
+	
+	/**
+	 * copy class together with super, equivalent and disjoint classes it refers to.
+	 * Classes are copied from an explicit stack in the same depth first order as a recursive copy,
+	 * so new classes get the same names, without deep hierarchies exhausting the call stack.
 	 * @param scls
 	 * @param target
 	 * @return
 	 */
-
 	private IClass copyClass(IClass scls, IOntology target) {
-		String name = createNewResourceName(scls,target);
+		WorkQueue<ClassCopy> stack = new WorkQueue<ClassCopy>();
+		IClass tcls = startClass(scls,target,stack);
+		while(!stack.isEmpty()){
+			ClassCopy copy = stack.peek();
+			if(copy.hasNext()){
+				int relation = copy.relations.get(copy.next);
+				IClass tr = startClass(copy.related.get(copy.next),target,stack);
+				copy.next++;
+				switch(relation){
+				case ClassCopy.SUPER:
+					copy.target.addSuperClass(tr);
+					copy.target.removeSuperClass(target.getRoot());
+					break;
+				case ClassCopy.EQUIVALENT:
+					copy.target.addEquivalentClass(tr);
+					break;
+				case ClassCopy.DISJOINT:
+					copy.target.addDisjointClass(tr);
+					break;
+				}
+			}else{
+				stack.pop();
+				
+				// save mapping
+				saveMapping(copy.source,copy.target);
+				
+				if(changes != null)
+					changes.update(copy.source,copy.target);
+			}
+		}
+		return tcls;
+	}
+	
+	/**
+	 * get or create target class for a source class, if class needs to be copied, its annotations are
+	 * transfered and its related classes are pushed on the stack to be copied next
+	 * @param scls
+	 * @param target
+	 * @param stack
+	 * @return
+	 */
+	private IClass startClass(IClass scls, IOntology target, WorkQueue<ClassCopy> stack) {
+		// if class was already converted then just return it
+		IClass tcls = (IClass) resourceMap.get(scls);
+		if(tcls != null)
+			return tcls;
 		
 		// return thing
-		if(scls.getOntology().getRoot().equals(scls))
-			return target.getRoot();
+		if(scls.getOntology().getRoot().equals(scls)){
+			tcls = target.getRoot();
+			resourceMap.put(scls,tcls);
+			return tcls;
+		}
 		
-		// if property was already created then just return it
-		if(target.hasResource(name))
-			return target.getClass(name);
+		String name = createNewResourceName(scls,target);
 		
-		// create new class
-		IClass tcls = target.createClass(name);
+		// if class was already created then just return it
+		if(target.hasResource(name)){
+			tcls = target.getClass(name);
+			resourceMap.put(scls,tcls);
+			if(!isChanged(scls,tcls,target)){
+				if(changes != null && isLocal(tcls,target))
+					changes.update(scls,tcls);
+				metrics.increment(ConversionMetrics.CLASSES_REUSED);
+				return tcls;
+			}
+			// class changed since previous run, copy it again
+			clearClass(tcls);
+			metrics.increment(ConversionMetrics.CLASSES_RECOPIED);
+		}else{
+			// create new class, register it before related classes are copied, so cycles end up here
+			tcls = target.createClass(name);
+			markUsed(name);
+			resourceMap.put(scls,tcls);
+			metrics.increment(ConversionMetrics.CLASSES_CREATED);
+		}
 		String [] labels = scls.getLabels();
 		if(labels.length == 0){
 			tcls.addLabel(scls.getName());
@@ -168,31 +353,102 @@ public class ConvertOntologyURIs {
 			}
 		}
 		
-		// transfer all super classes
-		for(IClass p: scls.getDirectSuperClasses()){
-			tcls.addSuperClass(copyClass(p,target));
-			tcls.removeSuperClass(target.getRoot());
-		}
+		// super, equivalent and disjoint classes are transfered from the stack
+		stack.push(new ClassCopy(scls,tcls));
 		
-		// transfer all equivalent classes
-		for(IClass eq: scls.getEquivalentClasses()){
-			if(!eq.equals(scls))
-				tcls.addEquivalentClass(copyClass(eq,target));
+		return tcls;
+	}
+	
+	/**
+	 * is target resource defined in target ontology (and not in one of its imports)
+	 * @param r
+	 * @param target
+	 * @return
+	 */
+	private boolean isLocal(IResource r, IOntology target){
+		return r.getURI().toString().startsWith(target.getURI().toString());
+	}
+	
+	/**
+	 * should existing target resource be copied again, because its source changed since previous run
+	 * @param source
+	 * @param tr
+	 * @param target
+	 * @return
+	 */
+	private boolean isChanged(IResource source, IResource tr, IOntology target){
+		return changes != null && isLocal(tr,target) && changes.isChanged(source);
+	}
+	
+	/**
+	 * remove content of target class before it is copied again
+	 * @param tcls
+	 */
+	private void clearClass(IClass tcls){
+		for(IProperty p : tcls.getProperties()){
+			for(Object o: tcls.getPropertyValues(p)){
+				tcls.removePropertyValue(p,o);
+			}
 		}
-		
-		// transfer all disjoint classes
-		for(IClass dc: scls.getDisjointClasses()){
-			tcls.addDisjointClass(copyClass(dc,target));
+		for(IClass p: tcls.getDirectSuperClasses()){
+			tcls.removeSuperClass(p);
+		}
+		for(Object o: tcls.getEquivalentRestrictions()){
+			if(o instanceof IRestriction)
+				tcls.removeEquivalentRestriction((IRestriction)o);
+			else if(o instanceof ILogicExpression)
+				tcls.removeEquivalentRestriction((ILogicExpression)o);
+		}
+		for(Object o: tcls.getDirectNecessaryRestrictions()){
+			if(o instanceof IRestriction)
+				tcls.removeNecessaryRestriction((IRestriction)o);
+			else if(o instanceof ILogicExpression)
+				tcls.removeNecessaryRestriction((ILogicExpression)o);
+		}
+		// equivalent and disjoint classes are not reachable through IClass, so their axioms are removed directly
+		if(tcls.getOntology() instanceof OOntology){
+			OOntology ont = (OOntology) tcls.getOntology();
+			OWLOntologyManager manager = ont.getOWLOntologyManager();
+			OWLOntology owl = ont.getOWLOntology();
+			OWLClass cls = manager.getOWLDataFactory().getOWLClass(IRI.create(tcls.getURI()));
+			List<OWLAxiom> axioms = new ArrayList<OWLAxiom>();
+			axioms.addAll(owl.getEquivalentClassesAxioms(cls));
+			axioms.addAll(owl.getDisjointClassesAxioms(cls));
+			if(!axioms.isEmpty())
+				manager.removeAxioms(owl,new HashSet<OWLAxiom>(axioms));
+		}
+	}
+	
+	/**
+	 * remove content of target property before it is copied again
+	 * @param tp
+	 */
+	private void clearProperty(IProperty tp){
+		for(IProperty p : tp.getProperties()){
+			for(Object o: tp.getPropertyValues(p)){
+				tp.removePropertyValue(p,o);
+			}
+		}
+		for(IProperty p: tp.getDirectSuperProperties()){
+			tp.removeSuperProperty(p);
+		}
+	}
+	
+	/**
+	 * record mapping between source and target resource, target always points back to its source,
+	 * source mapping goes into mapping registry if there is one, else into source ontology
+	 * @param source
+	 * @param target
+	 */
+	private void saveMapping(IResource source, IResource target){
+		clearSeeAlso(target);
+		target.addPropertyValue(getSeeAlso(target.getOntology()),""+source.getURI());
+		if(mappings != null){
+			mappings.put(source.getURI(),target.getURI());
+		}else{
+			clearSeeAlso(source);
+			source.addPropertyValue(getSeeAlso(source.getOntology()),""+target.getURI());
 		}
-
-					
-		// save seeAlso property
-		clearSeeAlso(tcls);
-		clearSeeAlso(scls);
-		tcls.addPropertyValue(getSeeAlso(tcls.getOntology()),""+scls.getURI());
-		scls.addPropertyValue(getSeeAlso(scls.getOntology()),""+tcls.getURI());
-		
-		return tcls;
 	}
 	
 	private void clearSeeAlso(IResource cls){
@@ -237,13 +493,100 @@ public class ConvertOntologyURIs {
 	}
 
 	public void convert(File sourceFile, File targetDir, String targetURI) throws IOntologyException, URISyntaxException, FileNotFoundException{
+		metrics = new ConversionMetrics(TOOL,sourceFile.getName());
+		metrics.phase("load");
+		File targetFile = new File(targetDir,OntologyHeader.getFileName(targetURI));
+		if(incremental && ChangeStore.isUnchanged(targetFile,sourceFile,targetFile)){
+			System.out.println("unchanged: "+sourceFile.getAbsolutePath());
+			metrics.increment(ConversionMetrics.SOURCES_UNCHANGED);
+			metrics.finish();
+			System.out.println(metrics);
+			return;
+		}
+		IOntology source = loadSource(sourceFile);
+		try{
+			metrics.phase("target");
+			IOntology target = createTarget(source, targetDir, targetURI);
+			if(changes != null)
+				changes.setInputs(sourceFile,targetFile);
+			metrics.phase("properties");
+			copyProperties(source, target);
+			metrics.phase("classes");
+			copyClasses(source, target);
+			metrics.phase("restrictions");
+			copyRestrictions(source, target);
+			metrics.phase("save");
+			save(source, target);
+		}finally{
+			// change store is closed even when a conversion fails
+			if(changes != null){
+				changes.close();
+				changes = null;
+			}
+		}
+		if(cache != null)
+			cache.update(sourceFile);
+		metrics.finish();
+		System.out.println(metrics);
+	}
+	
+	/**
+	 * load source ontology and reset the identifier index
+	 * @param sourceFile
+	 * @return
+	 * @throws IOntologyException
+	 */
+	IOntology loadSource(File sourceFile) throws IOntologyException{
 		index = 1;
-		IOntology source = OOntology.loadOntology(sourceFile);
-		IOntology target = OOntology.createOntology(new URI(targetURI));
-		System.out.println("converting: "+source.getURI());
+		allocator = null;
+		resourceMap.clear();
+		return (cache != null)?cache.get(sourceFile):OOntology.loadOntology(sourceFile);
+	}
+	
+	/**
+	 * create target ontology in a target directory and resolve its imports in memory
+	 * @param source
+	 * @param targetDir
+	 * @param targetURI
+	 * @return
+	 */
+	IOntology createTarget(IOntology source, File targetDir, String targetURI) throws IOntologyException, URISyntaxException, FileNotFoundException{
+		OOntology target = null;
+		if(incremental){
+			File previous = new File(targetDir,OntologyHeader.getFileName(targetURI));
+			changes = new ChangeStore(previous);
+			if(previous.exists()){
+				System.out.println("updating: "+previous.getAbsolutePath());
+				target = OOntology.loadOntology(previous);
+			}else{
+				// nothing to update, so every resource is new
+				changes.clear();
+			}
+		}
+		if(target == null)
+			target = createTarget(targetDir,targetURI,source);
 		
+		// transfer all properties
+		for(IProperty p : source.getProperties()){
+			for(Object o: source.getPropertyValues(p)){
+				target.addPropertyValue(p,o);
+			}
+		}
+		return target;
+	}
+	
+	/**
+	 * create new target ontology in a target directory
+	 * @param targetDir
+	 * @param targetURI
+	 * @param source
+	 * @return
+	 */
+	private OOntology createTarget(File targetDir, String targetURI, IOntology source) throws IOntologyException, URISyntaxException {
+		OOntology target = OOntology.createOntology(new URI(targetURI));
 	
 		// what about imported ontologies?
+		// load them into the target's manager, so they are resolved without reloading the target
 		for(IOntology o: source.getImportedOntologies()){
 			File f = null;
 			for(File ff: targetDir.listFiles()){
@@ -253,38 +596,25 @@ public class ConvertOntologyURIs {
 				}
 			}
 			if(f != null){
-				IOntology io = OOntology.loadOntology(f);
-				target.addImportedOntology(io);
+				OntologyImports.addImport(target,f);
 			}
 		}
 		
 		
-		// save ontology
+		// target ontology location
 		File targetOnt = new File(targetDir,target.getName()+".owl");
 		if(!targetOnt.getParentFile().exists())
 			targetOnt.getParentFile().mkdirs();
-		
-		System.out.println("saving: "+targetOnt.getAbsolutePath());
-		target.write(new FileOutputStream(targetOnt),IOntology.OWL_FORMAT);
-		
-		// reload ontology (@Q#Q@#RW#$)!!!!
-		// honestly this is FUCKED UP!!! I should not do that, BUT
-		// I can't get OWL-API to actually load the model of the imported ontology
-		// after I dynamically add an import.
-		System.out.println("reloading: "+targetOnt.getAbsolutePath());
-		target = OOntology.loadOntology(targetOnt);
-		
-	/*	System.out.println(target.hasResource("DP000011"));
-		System.out.println(Arrays.asList(target.getResource("http://ontologies.dbmi.pitt.edu/deepphe/cancer/cancer.owl#DP000011").getLabels()));*/
-		
-		// transfer all properties
-		for(IProperty p : source.getProperties()){
-			for(Object o: source.getPropertyValues(p)){
-				target.addPropertyValue(p,o);
-			}
-		}
-		
-		System.out.println("converting properties..");
+		OntologyImports.setLocation(target,targetOnt);
+		return target;
+	}
+	
+	/**
+	 * copy all properties from source to target
+	 * @param source
+	 * @param target
+	 */
+	void copyProperties(IOntology source, IOntology target){
 		IResourceIterator props = source.getAllProperties();
 		while(props.hasNext()){
 			IProperty sp = (IProperty) props.next();
@@ -292,8 +622,14 @@ public class ConvertOntologyURIs {
 				copyProperty(sp, target);
 			}
 		}
-
-		System.out.println("converting classes..");
+	}
+	
+	/**
+	 * copy all classes from source to target
+	 * @param source
+	 * @param target
+	 */
+	void copyClasses(IOntology source, IOntology target){
 		IResourceIterator clss = source.getAllClasses();
 		while(clss.hasNext()){
 			IClass cls = (IClass) clss.next();
@@ -301,54 +637,107 @@ public class ConvertOntologyURIs {
 				copyClass(cls, target);
 			}
 		}
-
-		System.out.println("converting restrictions..");
-		clss = source.getAllClasses();
+	}
+	
+	/**
+	 * copy restrictions of all classes from source to target
+	 * @param source
+	 * @param target
+	 */
+	void copyRestrictions(IOntology source, IOntology target){
+		IResourceIterator clss = source.getAllClasses();
 		while(clss.hasNext()){
 			IClass cls = (IClass) clss.next();
 			if(cls != null){
-				copyRestrictions(cls, target);
+				if(hasNewRestrictions(cls, target)){
+					RestrictionChanges c = copyRestrictions(cls, target);
+					c.apply();
+					metrics.add(ConversionMetrics.RESTRICTIONS_COPIED,c.getEquivalent().size()+c.getNecessary().size());
+				}else{
+					metrics.increment(ConversionMetrics.CLASSES_SKIPPED);
+				}
 			}
 		}
-		
+	}
 	
+	/**
+	 * save target ontology and source ontology with updated mappings
+	 * @param source
+	 * @param target
+	 * @throws IOntologyException
+	 */
+	void save(IOntology source, IOntology target) throws IOntologyException{
+		// remove resources whose source is gone since previous run
+		if(changes != null){
+			for(String name: changes.getRemoved()){
+				IResource r = target.getResource(name);
+				if(r != null && isLocal(r,target))
+					r.delete();
+			}
+		}
 		
 		// save ontology
-		System.out.println("saving: "+targetOnt.getAbsolutePath());
-		target.save();
+		OntologyWriter.save(target);
+		
+		// source only needs saving when it holds the mappings
+		if(mappings != null){
+			mappings.commit();
+		}else{
+			OntologyWriter.save(source);
+		}
 		
-		System.out.println("saving: "+source.getLocation());
-		source.save();
+		// remember what was converted for the next run
+		if(changes != null)
+			changes.commit();
 	}
 	
 
 
-	private void copyRestrictions(IClass scls, IOntology target) {
+	/**
+	 * should restrictions of a class be copied
+	 * @param scls
+	 * @param target
+	 * @return
+	 */
+	private boolean hasNewRestrictions(IClass scls, IOntology target) {
 		IClass tcls = copyClass(scls, target);
 		// skip class that is defined in different ontology
-		if(!tcls.getURI().toString().startsWith(target.getURI().toString()))
-			return;
+		if(!isLocal(tcls,target))
+			return false;
 		
+		// skip class that did not change since previous run, its restrictions are already there
+		if(changes != null && !changes.isChanged(scls) && changes.getTarget(scls) != null)
+			return false;
 		
+		return true;
+	}
+
+	/**
+	 * copy restrictions of a class without adding them to its target class
+	 * @param scls
+	 * @param target
+	 * @return
+	 */
+	private RestrictionChanges copyRestrictions(IClass scls, IOntology target) {
+		RestrictionChanges tcls = new RestrictionChanges((IClass) resourceMap.get(scls));
 		
 		// handle restrictions
 		for(Object o :  scls.getEquivalentRestrictions()){
 			if(o instanceof IRestriction){
-				tcls.addEquivalentRestriction(copyRestriction((IRestriction)o,target));
+				tcls.addEquivalent(copyRestriction((IRestriction)o,target));
 			}else if(o instanceof ILogicExpression){
-				tcls.addEquivalentRestriction(copyExpression((ILogicExpression)o,target));
+				tcls.addEquivalent(copyExpression((ILogicExpression)o,target));
 			}
 		}
 		// handle restrictions
 		for(Object o : scls.getDirectNecessaryRestrictions()){
 			if(o instanceof IRestriction){
-				tcls.addNecessaryRestriction(copyRestriction((IRestriction)o,target));
+				tcls.addNecessary(copyRestriction((IRestriction)o,target));
 			}else if(o instanceof ILogicExpression){
-				tcls.addNecessaryRestriction(copyExpression((ILogicExpression)o,target));
+				tcls.addNecessary(copyExpression((ILogicExpression)o,target));
 			}
 		}
-		
-		
+		return tcls;
 	}
 
 	public static void main(String[] args) throws Exception {
@@ -359,9 +748,21 @@ public class ConvertOntologyURIs {
 		
 		String targetDirectory = "/home/tseytlin/Output/ontologies/";
 		
+		// -metrics <json> writes phase times and counters of both conversions
+		File metricsFile = null;
+		for(int i=0;i<args.length;i++){
+			if("-metrics".equals(args[i]) && i+1 < args.length)
+				metricsFile = new File(args[++i]);
+		}
+		
 		ConvertOntologyURIs c = new ConvertOntologyURIs();
+		List<ConversionMetrics> metrics = new ArrayList<ConversionMetrics>();
 		c.convert(new File(sourceOntologyCancer),new File(targetDirectory),targetURIcancer);
+		metrics.add(c.getMetrics());
 		c.convert(new File(sourceOntologyBreast),new File(targetDirectory),targetURIbreast);
+		metrics.add(c.getMetrics());
+		if(metricsFile != null)
+			ConversionMetrics.write(metrics,metricsFile);
 		System.out.println("ok");
 	}
 
@@ -3,14 +3,19 @@ package org.healthnlp.deepphe.ontologies;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import edu.pitt.dbmi.nlp.noble.ontology.*;
 import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
@@ -19,8 +24,14 @@ import edu.pitt.dbmi.nlp.noble.ontology.owl.OProperty;
 public class GenerateModelOntology {
 	public static final String URI_FORMAT =  "DP%06d";
 	public static final String BASE_URL_PREFIX = "http://ontologies.dbmi.pitt.edu";
+	public static final String MODEL = "model", DOMAIN = "domain";
+	private static final String EQUIVALENT = "e ", NECESSARY = "n ";
 	private Map<IOntology,IProperty> seeAlsoMap;
-	private Map<String,String> model2name,name2model;
+	private LabelIndex modelIndex;
+	private OntologyAlignment alignment;
+	private RestrictionIndex restrictionIndex = new RestrictionIndex();
+	private HierarchyIndex hierarchy;
+	private ResourceMap resourceMap = new ResourceMap();
 	
 	// some exceptional mappings between NLP and model ontologies
 	private static final Map<String,String> equivalenceMap = new LinkedHashMap<String, String>();
@@ -28,9 +39,97 @@ public class GenerateModelOntology {
 		equivalenceMap.put("MedicationStatement","Medication");
 	}
 	
+	private IdentifierAllocator allocator;
+	private ChangeStore changes;
+	private MappingRegistry mappings;
+	private OntologyCache cache;
+	private SharedOntology sharedModel;
+	private File alignmentDir;
+	private ConsistencyCheck consistency;
+	private boolean incremental, reachableOnly, checkConsistency, domainOntology;
 	private int index;
+	private ConversionMetrics metrics = new ConversionMetrics(MODEL,"");
 	
 	
+	/**
+	 * in incremental mode existing domain ontology is updated in place and restrictions are
+	 * only copied again for source classes whose content changed since previous run,
+	 * a conversion whose source, target and model did not change at all is skipped without loading them
+	 * @param incremental
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+	
+	/**
+	 * keep source to DP resource mappings in a registry instead of source ontology
+	 * @param mappings
+	 */
+	public void setMappingRegistry(MappingRegistry mappings) {
+		this.mappings = mappings;
+	}
+	
+	/**
+	 * only load source classes that a conversion can reach from the model, source files are pre-scanned
+	 * and a filtered copy is loaded instead
+	 * @param reachableOnly
+	 */
+	public void setReachableOnly(boolean reachableOnly) {
+		this.reachableOnly = reachableOnly;
+	}
+	
+	/**
+	 * keep source ontologies loaded between conversions, a source is only parsed again when its file changes
+	 * (not used in reachable only mode, where a filtered copy of the source is loaded)
+	 * @param cache
+	 */
+	public void setOntologyCache(OntologyCache cache) {
+		this.cache = cache;
+	}
+	
+	/**
+	 * model that domain ontologies import, parsed once and shared between domain conversions
+	 * (only used when its file is the model that a domain is converted against)
+	 * @param sharedModel
+	 */
+	public void setSharedModel(SharedOntology sharedModel) {
+		this.sharedModel = sharedModel;
+	}
+	
+	/**
+	 * write alignment table of every conversion (source class, model class and how they were aligned)
+	 * to a directory, as <target name>.alignment.tsv
+	 * @param alignmentDir
+	 */
+	public void setAlignmentDirectory(File alignmentDir) {
+		this.alignmentDir = alignmentDir;
+	}
+	
+	/**
+	 * check classes that a conversion changed (and their sub-classes) for local inconsistencies
+	 * before the result is saved, see ConsistencyCheck
+	 * @param checkConsistency
+	 */
+	public void setConsistencyCheck(boolean checkConsistency) {
+		this.checkConsistency = checkConsistency;
+	}
+	
+	/**
+	 * consistency check of the last conversion
+	 * @return check or null if it was not enabled
+	 */
+	public ConsistencyCheck getConsistencyCheck() {
+		return consistency;
+	}
+	
+	/**
+	 * phase times and counters of the last conversion
+	 * @return
+	 */
+	public ConversionMetrics getMetrics() {
+		return metrics;
+	}
+	
 	
 	public static void main(String[] args) throws Exception {
 		
@@ -40,33 +139,69 @@ public class GenerateModelOntology {
 		File modelCancer = new File("/home/tseytlin/Work/ontologies/cancer_models/cancer.owl");
 		File targetBreastCancer = new File("/home/tseytlin/Work/ontologies/cancer_models/breastCancer.owl");
 		
+		// -metrics <json> writes phase times and counters of both conversions,
+		// -alignments <dir> writes what source class each model class was aligned with
+		File metricsFile = null, alignmentDir = null;
+		for(int i=0;i<args.length;i++){
+			if("-metrics".equals(args[i]) && i+1 < args.length)
+				metricsFile = new File(args[++i]);
+			else if("-alignments".equals(args[i]) && i+1 < args.length)
+				alignmentDir = new File(args[++i]);
+		}
+		
 		GenerateModelOntology gm = new GenerateModelOntology();
+		gm.setAlignmentDirectory(alignmentDir);
+		List<ConversionMetrics> metrics = new ArrayList<ConversionMetrics>();
 		System.out.println("creating model ..");
 		gm.convertModel(sourceCancer,modelCancer);
+		metrics.add(gm.getMetrics());
 		System.out.println("creating domain model ..");
 		gm.convertDomainOntology(sourceBreastCancer,targetBreastCancer, modelCancer);
+		metrics.add(gm.getMetrics());
+		if(metricsFile != null)
+			ConversionMetrics.write(metrics,metricsFile);
 		System.out.println("done");
 	}
 	
 	
-	private void loadNameMap(IOntology ont){
-		model2name = new HashMap<String, String>();
-		name2model = new HashMap<String, String>();
+	void loadNameMap(IOntology ont){
+		// new conversion, forget resources converted by previous one
+		// and continue numbering where it left off
+		resourceMap.clear();
+		if(allocator != null)
+			index = allocator.getCursor();
+		allocator = null;
 		
-		for(Iterator<IResource> it = ont.getAllResources();it.hasNext();){
-			addResourceName(it.next());
-		}
+		modelIndex = new LabelIndex(ont.getAllResources());
+		hierarchy = null;
+		alignment = null;
+		consistency = checkConsistency?new ConsistencyCheck():null;
 	}
 	
 	
 	private void addResourceName(Object o){
-		if(o instanceof IResource){
-			IResource r = (IResource) o;
-			String name = r.getName();
-			String label = (r.getLabels().length > 0?r.getLabels()[0]:r.getName()).replaceAll("\\s+","");
-			model2name.put(name,label);
-			name2model.put(label,name);
-		}
+		modelIndex.add(o);
+	}
+	
+	/**
+	 * find source class whose name matches display name of a model class
+	 * @param source
+	 * @param cls
+	 * @return
+	 */
+	private IClass getSourceClass(IOntology source, IClass cls){
+		return getAlignment(source).getSourceClass(getDisplayName(cls));
+	}
+	
+	/**
+	 * alignment of source classes to model classes, built once per source ontology
+	 * @param source
+	 * @return
+	 */
+	private OntologyAlignment getAlignment(IOntology source){
+		if(alignment == null || alignment.getSource() != source)
+			alignment = new OntologyAlignment(source,modelIndex,equivalenceMap);
+		return alignment;
 	}
 	
 	/**
@@ -76,24 +211,159 @@ public class GenerateModelOntology {
 	 * @throws IOntologyException 
 	 */
 	
-	private void convertModel(File sourceCancer, File modelCancer) throws IOntologyException {
-		OOntology source = OOntology.loadOntology(sourceCancer);
+	public void convertModel(File sourceCancer, File modelCancer) throws IOntologyException {
+		metrics = new ConversionMetrics(MODEL,sourceCancer.getName());
+		metrics.phase("load");
+		domainOntology = false;
+		if(incremental && ChangeStore.isUnchanged(modelCancer,sourceCancer,modelCancer)){
+			skipUnchanged(sourceCancer);
+			return;
+		}
 		OOntology model = OOntology.loadOntology(modelCancer);
 		
 		// load name
 		loadNameMap(model);
-	
+		OOntology source = loadSource(sourceCancer);
+		if(incremental){
+			changes = new ChangeStore(modelCancer);
+			changes.setInputs(sourceCancer,modelCancer);
+		}
+		try{
+			metrics.phase("classes");
+			copyModelClasses(source,model);
+			metrics.phase("properties");
+			copyProperties(source,model);
+			metrics.phase("restrictions");
+			copyRestrictions(source,model);
+			removeStaleResources(model);
+			checkConsistency(model);
 			
+			metrics.phase("save");
+			OntologyWriter.save(model);
+			commitChanges();
+			writeAlignment(modelCancer);
+		}finally{
+			closeChanges();
+		}
+		metrics.finish();
+		System.out.println(metrics);
+	}
+	
+	/**
+	 * load source ontology, in reachable only mode just the classes that can be reached
+	 * from classes of the current model (names must be loaded first)
+	 * @param file
+	 * @return
+	 * @throws IOntologyException
+	 */
+	OOntology loadSource(File file) throws IOntologyException {
+		if(!reachableOnly)
+			return (cache != null)?cache.get(file):OOntology.loadOntology(file);
+		File dir = null;
+		try{
+			SourceScan scan = new SourceScan(file);
+			Set<String> keep = scan.getReachable(modelIndex.getLabels(),equivalenceMap.keySet());
+			metrics.add(ConversionMetrics.SOURCE_CLASSES,scan.getClassCount());
+			metrics.add(ConversionMetrics.LOADED_CLASSES,keep.size());
+			dir = Files.createTempDirectory("reachable").toFile();
+			return OOntology.loadOntology(scan.writeReachable(keep,dir));
+		}catch(IOException e){
+			throw new IOntologyException("Unable to scan source ontology "+file,e);
+		}finally{
+			if(dir != null){
+				for(File f: dir.listFiles())
+					f.delete();
+				dir.delete();
+			}
+		}
+	}
+	
+	/**
+	 * check what this conversion changed, problems are reported, but do not stop the conversion
+	 * @param target
+	 */
+	private void checkConsistency(OOntology target){
+		if(consistency == null)
+			return;
+		List<ConsistencyCheck.Problem> problems = consistency.check(getHierarchy(target),metrics);
+		metrics.add(ConversionMetrics.CLASSES_CHECKED,consistency.getCheckedCount());
+		metrics.add(ConversionMetrics.CONSISTENCY_PROBLEMS,problems.size());
+		for(ConsistencyCheck.Problem p: problems)
+			System.out.println("inconsistent: "+p);
+		System.out.println(consistency);
+	}
+	
+	/**
+	 * remember source content that was converted for the next run
+	 */
+	private void commitChanges(){
+		if(mappings != null)
+			mappings.commit();
+		if(changes != null)
+			changes.commit();
+	}
+	
+	/**
+	 * write alignment of the last conversion, if there is an alignment directory
+	 * @param target - target ontology file that names the table
+	 * @throws IOntologyException
+	 */
+	private void writeAlignment(File target) throws IOntologyException{
+		if(alignmentDir == null || alignment == null)
+			return;
+		File file = new File(alignmentDir,target.getName().replaceAll("\\.owl$","")+".alignment.tsv");
+		try{
+			if(!alignmentDir.exists() && !alignmentDir.mkdirs())
+				throw new IOException("Unable to create "+alignmentDir);
+			Writer w = new OutputStreamWriter(new FileOutputStream(file),"UTF-8");
+			try{
+				alignment.write(w);
+			}finally{
+				w.close();
+			}
+		}catch(IOException e){
+			throw new IOntologyException("Unable to write alignment "+file,e);
+		}
+	}
+	
+	/**
+	 * finish conversion whose source, target and model did not change since previous run
+	 * @param source
+	 */
+	private void skipUnchanged(File source){
+		System.out.println("unchanged: "+source.getAbsolutePath());
+		metrics.increment(ConversionMetrics.SOURCES_UNCHANGED);
+		metrics.finish();
+		System.out.println(metrics);
+	}
+	
+	/**
+	 * close change store of the last conversion, whether it was committed or not
+	 */
+	private void closeChanges(){
+		if(changes != null){
+			changes.close();
+			changes = null;
+		}
+	}
+	
+	/**
+	 * copy top level classes and leaf sub-classes from source into the model
+	 * @param source
+	 * @param model
+	 */
+	void copyModelClasses(OOntology source, OOntology model){
+		getAlignment(source);
 		// copy classes
 		for(IClass cls : source.getRoot().getDirectSubClasses())
 			copyDomainClass(cls,model);
 		
 		
 		// copy sub-classes into cancer template (if it is a leaf node)
-		for(IClass cls: model.getRoot().getSubClasses()){
+		for(IClass cls: getHierarchy(model).getSubClasses(model.getRoot())){
 			// is it a leaf node?
-			if(cls.getSubClasses().length == 0){
-				IClass src = source.getClass(getDisplayName(cls));
+			if(hierarchy.isLeaf(cls)){
+				IClass src = getSourceClass(source,cls);
 				// does this class exists in the source
 				if(src != null){
 					for(IClass sc: src.getDirectSubClasses()){
@@ -102,42 +372,79 @@ public class GenerateModelOntology {
 				}
 			}
 		}
-
+	}
+	
+	/**
+	 * class hierarchy of an ontology, it is built once and then kept current as classes are copied into it
+	 * @param ont
+	 * @return
+	 */
+	private HierarchyIndex getHierarchy(IOntology ont){
+		if(hierarchy == null || hierarchy.getOntology() != ont)
+			hierarchy = new HierarchyIndex(ont.getRoot());
+		return hierarchy;
+	}
+	
+	/**
+	 * copy datatype and object properties from source to target
+	 * @param source
+	 * @param target
+	 */
+	void copyProperties(OOntology source, OOntology target){
 		//copy properties
 		for(IProperty p: source.getTopDataProperty().getSubProperties())
-			copyProperty(p,model);
+			copyProperty(p,target);
 		
 		// copy properties
 		for(IProperty p: source.getTopObjectProperty().getSubProperties())
-			copyProperty(p,model);
-				
-		
-		
-		// copy restrictions
-		for(IClass cls: model.getRoot().getSubClasses()){
+			copyProperty(p,target);
+	}
+	
+	/**
+	 * copy restrictions for every target class that has a matching source class
+	 * @param source
+	 * @param target
+	 */
+	void copyRestrictions(OOntology source, OOntology target){
+		restrictionIndex = new RestrictionIndex(getHierarchy(target));
+		for(IClass cls: getHierarchy(target).getSubClasses(target.getRoot())){
 			// find matching class
-			IClass src = source.getClass(getDisplayName(cls));
+			IClass src = getSourceClass(source,cls);
 			if(src != null){
-				copyRestrictions(src,cls);
+				// skip class that did not change since previous run, its restrictions are already there
+				if(changes != null){
+					boolean changed = changes.isChanged(src) || changes.getTarget(src) == null;
+					changes.update(src,cls);
+					if(!changed){
+						metrics.increment(ConversionMetrics.CLASSES_SKIPPED);
+						continue;
+					}
+					// take out what the previous run copied, before it can hide new copies as duplicates
+					removeCopiedRestrictions(cls,changes.getRestrictions(""+src.getURI()));
+				}
+				RestrictionChanges copies = copyRestrictions(src,cls);
+				copies.setSource(src);
+				addRestrictions(copies);
 			}
 		}
-		
-		
-		model.save();
 	}
 
-	
-	private void copyRestrictions(IClass src, IClass target) {
+	/**
+	 * copy restrictions of source class without adding them to target class
+	 * @param src
+	 * @param target
+	 * @return
+	 */
+	private RestrictionChanges copyRestrictions(IClass src, IClass target) {
+		RestrictionChanges changes = new RestrictionChanges(target);
 		// handle restrictions
 		for(Object o :  src.getEquivalentRestrictions()){
 			if(o instanceof IRestriction){
 				IRestriction r = copyRestriction((IRestriction)o,target.getOntology());
-				if(r != null && !hasRestriction(target,r))
-					target.addEquivalentRestriction(r);
-				else 
-					System.out.println("  skipping "+o);
+				if(r != null)
+					changes.addEquivalent(r);
 			}else if(o instanceof ILogicExpression){
-				target.addEquivalentRestriction(copyExpression((ILogicExpression)o,target.getOntology()));
+				changes.addEquivalent(copyExpression((ILogicExpression)o,target.getOntology()));
 			}
 		}
 		
@@ -145,25 +452,131 @@ public class GenerateModelOntology {
 		for(Object o : src.getDirectNecessaryRestrictions()){
 			if(o instanceof IRestriction){
 				IRestriction r = copyRestriction((IRestriction)o,target.getOntology());
-				if(r != null && !hasRestriction(target,r))
-					target.addNecessaryRestriction(r);
-				else 
-					System.out.println("  skipping "+o);	
+				if(r != null)
+					changes.addNecessary(r);
 			}else if(o instanceof ILogicExpression){
-				target.addNecessaryRestriction(copyExpression((ILogicExpression)o,target.getOntology()));
+				changes.addNecessary(copyExpression((ILogicExpression)o,target.getOntology()));
 			}
 		}
+		return changes;
 	}
 
+	/**
+	 * add copied restrictions to target class, skipping restrictions it already has.
+	 * In incremental mode signatures of restrictions that were added are remembered for the source class,
+	 * so that the next run can take them out again
+	 * @param copies
+	 */
+	private void addRestrictions(RestrictionChanges copies) {
+		IClass target = copies.getTarget();
+		List<String> added = new ArrayList<String>();
+		for(Object o: copies.getEquivalent()){
+			if(o instanceof IRestriction){
+				IRestriction r = (IRestriction) o;
+				if(!restrictionIndex.contains(target,r)){
+					target.addEquivalentRestriction(r);
+					restrictionIndex.add(target,r);
+					metrics.increment(ConversionMetrics.RESTRICTIONS_COPIED);
+					added.add(EQUIVALENT+RestrictionIndex.getSignature(r));
+				}else{
+					metrics.increment(ConversionMetrics.RESTRICTIONS_DEDUPLICATED);
+				}
+			}else if(o instanceof ILogicExpression){
+				target.addEquivalentRestriction((ILogicExpression)o);
+				metrics.increment(ConversionMetrics.RESTRICTIONS_COPIED);
+				added.add(EQUIVALENT+RestrictionIndex.getSignature((ILogicExpression)o));
+			}
+		}
+		for(Object o: copies.getNecessary()){
+			if(o instanceof IRestriction){
+				IRestriction r = (IRestriction) o;
+				if(!restrictionIndex.contains(target,r)){
+					target.addNecessaryRestriction(r);
+					restrictionIndex.add(target,r);
+					metrics.increment(ConversionMetrics.RESTRICTIONS_COPIED);
+					added.add(NECESSARY+RestrictionIndex.getSignature(r));
+				}else{
+					metrics.increment(ConversionMetrics.RESTRICTIONS_DEDUPLICATED);
+				}
+			}else if(o instanceof ILogicExpression){
+				target.addNecessaryRestriction((ILogicExpression)o);
+				metrics.increment(ConversionMetrics.RESTRICTIONS_COPIED);
+				added.add(NECESSARY+RestrictionIndex.getSignature((ILogicExpression)o));
+			}
+		}
+		if(changes != null && copies.getSource() != null)
+			changes.setRestrictions(copies.getSource(),added);
+		if(!added.isEmpty() && consistency != null)
+			consistency.addChanged(target);
+	}
 	
-	private boolean hasRestriction(IClass target, IRestriction r) {
-		for(IRestriction rr : target.getRestrictions(r.getProperty())){
-			if(rr.getParameter().equals(r.getParameter()))
-				return true;
+	/**
+	 * remove restrictions that a previous run copied to a class
+	 * @param cls
+	 * @param signatures - signatures recorded by the previous run
+	 */
+	private void removeCopiedRestrictions(IClass cls, List<String> signatures){
+		if(signatures.isEmpty())
+			return;
+		Set<String> previous = new HashSet<String>(signatures);
+		for(Object o: cls.getEquivalentRestrictions()){
+			if(o instanceof IRestriction && previous.contains(EQUIVALENT+RestrictionIndex.getSignature((IRestriction)o))){
+				cls.removeEquivalentRestriction((IRestriction)o);
+				metrics.increment(ConversionMetrics.RESTRICTIONS_REMOVED);
+			}else if(o instanceof ILogicExpression && !(o instanceof IRestriction) && previous.contains(EQUIVALENT+RestrictionIndex.getSignature((ILogicExpression)o))){
+				cls.removeEquivalentRestriction((ILogicExpression)o);
+				metrics.increment(ConversionMetrics.RESTRICTIONS_REMOVED);
+			}
+		}
+		for(Object o: cls.getDirectNecessaryRestrictions()){
+			if(o instanceof IRestriction && previous.contains(NECESSARY+RestrictionIndex.getSignature((IRestriction)o))){
+				cls.removeNecessaryRestriction((IRestriction)o);
+				metrics.increment(ConversionMetrics.RESTRICTIONS_REMOVED);
+			}else if(o instanceof ILogicExpression && !(o instanceof IRestriction) && previous.contains(NECESSARY+RestrictionIndex.getSignature((ILogicExpression)o))){
+				cls.removeNecessaryRestriction((ILogicExpression)o);
+				metrics.increment(ConversionMetrics.RESTRICTIONS_REMOVED);
+			}
 		}
-		return false;
 	}
-
+	
+	/**
+	 * in incremental mode, take out what previous runs made from source resources that are gone:
+	 * resources this tool created are deleted, other classes only lose the restrictions that were copied to them
+	 * @param target
+	 */
+	private void removeStaleResources(IOntology target){
+		if(changes == null)
+			return;
+		metrics.phase("remove");
+		for(String uri: changes.getRemovedSources()){
+			String name = changes.getTarget(uri);
+			if(name == null || !target.hasResource(name))
+				continue;
+			IResource r = target.getResource(name);
+			// a resource that another source was converted to in this run stays
+			if(isGenerated(r,target) && !changes.isConverted(name)){
+				r.delete();
+				changes.setDeleted(name);
+				// hierarchy is built again for the consistency check
+				hierarchy = null;
+				metrics.increment(ConversionMetrics.RESOURCES_DELETED);
+			}else if(r instanceof IClass){
+				removeCopiedRestrictions((IClass)r,changes.getRestrictions(uri));
+			}
+		}
+	}
+	
+	/**
+	 * was target resource made by this tool: everything in a domain ontology, in the model only what was created
+	 * @param r
+	 * @param target
+	 * @return
+	 */
+	private boolean isGenerated(IResource r, IOntology target){
+		if(domainOntology)
+			return r.getURI().toString().startsWith(target.getURI().toString());
+		return changes != null && changes.isCreated(r.getName());
+	}
 
 	private IRestriction copyRestriction(IRestriction sr, IOntology target){
 		ILogicExpression exp = copyExpression(sr.getParameter(), target);
@@ -202,10 +615,7 @@ public class GenerateModelOntology {
 	
 	
 	private String getDisplayName(IResource cls) {
-		String name = cls.getName();
-		if(cls.getLabels().length > 0)
-			name = cls.getLabels()[0];
-		return name.replaceAll("\\s+","");
+		return modelIndex.getLabel(cls);
 	}
 	
 	private String getModelName(IResource cls) {
@@ -213,7 +623,7 @@ public class GenerateModelOntology {
 	}
 
 	private String getModelName(String cls) {
-		return name2model.get(cls);
+		return modelIndex.getName(cls);
 	}
 	
 	/**
@@ -222,6 +632,10 @@ public class GenerateModelOntology {
 	 * @param root
 	 */
 	private IClass getTargetClass(IClass source, IOntology target) {
+		IResource r = resourceMap.get(source);
+		if(r instanceof IClass)
+			return (IClass) r;
+		
 		String name = getModelName(source);
 		if(name == null){
 			return null;
@@ -235,23 +649,57 @@ public class GenerateModelOntology {
 	}
 	
 	/**
-	 * copy classes from source to  model, but only if they have parents in model
+	 * copy class and its sub-classes from source to model under a given model parent.
+	 * Sub-classes are copied from a work queue in the same depth first order as a recursive copy.
 	 * @param source
-	 * @param root
+	 * @param modelParent
+	 * @return copied class
 	 */
 	private IClass copyClass(IClass source, IClass modelParent) {
+		WorkQueue<IClass []> queue = new WorkQueue<IClass []>();
+		IClass tcls = copyClass(source,modelParent,queue);
+		for(IClass [] work = queue.pop(); work != null; work = queue.pop()){
+			copyClass(work[0],work[1],queue);
+		}
+		return tcls;
+	}
+	
+	/**
+	 * copy a single class from source to  model, but only if they have parents in model
+	 * @param source
+	 * @param modelParent
+	 * @param queue - work queue where (sub-class, parent) pairs that still need to be copied are added
+	 * @return copied class
+	 */
+	private IClass copyClass(IClass source, IClass modelParent, WorkQueue<IClass []> queue) {
 		IOntology target = modelParent.getOntology();
-		String name = createNewResourceName(source,target);
 		
 		// return thing
 		if(source.getOntology().getRoot().equals(source))
 			return target.getRoot();
 		
-		// if property was already created then just return it
-		if(target.hasResource(name)){
-			IClass targetClass = target.getClass(name);
-			if(!targetClass.hasSuperClass(modelParent))
+		// if class was already converted then just link it to a new parent
+		IClass targetClass = (IClass) resourceMap.get(source);
+		String name = null;
+		if(targetClass == null){
+			name = createNewResourceName(source,target);
+			// if class was already created then just return it
+			if(target.hasResource(name)){
+				targetClass = target.getClass(name);
+				resourceMap.put(source,targetClass);
+			}
+		}
+		if(targetClass != null){
+			if(!targetClass.hasSuperClass(modelParent)){
 				targetClass.addSuperClass(modelParent);
+				if(hierarchy != null)
+					hierarchy.addSubClass(modelParent,targetClass);
+				if(consistency != null)
+					consistency.addChanged(targetClass);
+			}
+			if(changes != null)
+				changes.update(source,targetClass);
+			metrics.increment(ConversionMetrics.CLASSES_REUSED);
 			return targetClass;
 		}
 		
@@ -259,6 +707,17 @@ public class GenerateModelOntology {
 	
 		// create new class
 		IClass tcls = modelParent.createSubClass(name);
+		markUsed(name);
+		if(hierarchy != null)
+			hierarchy.addSubClass(modelParent,tcls);
+		if(consistency != null)
+			consistency.addChanged(tcls);
+		if(changes != null){
+			changes.update(source,tcls);
+			changes.setCreated(tcls);
+		}
+		resourceMap.put(source,tcls);
+		metrics.increment(ConversionMetrics.CLASSES_CREATED);
 		tcls.addLabel(source.getName());
 		/*
 		for(String l: source.getLabels()){
@@ -292,19 +751,19 @@ public class GenerateModelOntology {
 		}*/
 
 					
-		// save seeAlso property
-		clearSeeAlso(tcls);
-		clearSeeAlso(source);
-		tcls.addPropertyValue(getSeeAlso(tcls.getOntology()),""+source.getURI());
-		source.addPropertyValue(getSeeAlso(source.getOntology()),""+tcls.getURI());
+		// save mapping
+		saveMapping(source,tcls);
 		
 		// add resource name to map
 		addResourceName(tcls);
 		
-		// recurse into children
-		for(IClass sc: source.getDirectSubClasses()){
-			copyClass(sc,tcls);
+		// queue up children
+		IClass [] children = source.getDirectSubClasses();
+		IClass [][] work = new IClass [children.length][];
+		for(int i=0;i<children.length;i++){
+			work[i] = new IClass [] {children[i],tcls};
 		}
+		queue.pushAll(work);
 		
 		return tcls;
 	}
@@ -334,6 +793,18 @@ public class GenerateModelOntology {
 	 * @return
 	 */
 	private String createNewResourceName(IResource source,IOntology target){
+		// check if resource was already mapped in the registry
+		if(mappings != null){
+			String t = mappings.getTarget(source.getURI());
+			if(t != null){
+				try {
+					return new URI(t).getFragment();
+				} catch (URISyntaxException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		
 		// check if existing resource already has an owl:seeAlso
 		for(Object nm : source.getPropertyValues(getSeeAlso(source.getOntology()))){
 			if(nm.toString().startsWith(BASE_URL_PREFIX)){
@@ -350,12 +821,37 @@ public class GenerateModelOntology {
 		if(getModelName(source) != null)
 			return getModelName(source);
 				
-		// check if there is already resource with a given name
-		String name = null;
-		do{
-			name = String.format(URI_FORMAT,index++);
-		}while(target.hasResource(name));
-		return name;
+		// pick next identifier that is not used in the target yet
+		if(allocator == null)
+			allocator = new IdentifierAllocator(target,index);
+		metrics.increment(ConversionMetrics.IDS_ALLOCATED);
+		return allocator.nextName();
+	}
+	
+	/**
+	 * a resource was created under a name, make sure the allocator does not hand it out again
+	 * @param name
+	 */
+	private void markUsed(String name){
+		if(allocator != null)
+			allocator.markUsed(name);
+	}
+	
+	/**
+	 * record mapping between source and target resource, target always points back to its source,
+	 * source mapping goes into mapping registry if there is one, else into source ontology
+	 * @param source
+	 * @param target
+	 */
+	private void saveMapping(IResource source, IResource target){
+		clearSeeAlso(target);
+		target.addPropertyValue(getSeeAlso(target.getOntology()),""+source.getURI());
+		if(mappings != null){
+			mappings.put(source.getURI(),target.getURI());
+		}else{
+			clearSeeAlso(source);
+			source.addPropertyValue(getSeeAlso(source.getOntology()),""+target.getURI());
+		}
 	}
 	
 	private void clearSeeAlso(IResource cls){
@@ -376,16 +872,34 @@ public class GenerateModelOntology {
 	private IProperty copyProperty(IProperty sp, IOntology target){
 		if(isIgnored(sp))
 			return null;
+		
+		// if property was already converted then just return it
+		IProperty tp = (IProperty) resourceMap.get(sp);
+		if(tp != null)
+			return tp;
+		
 		String name = createNewResourceName(sp,target);
 		
 		// if property was already created then just return it
 		if(target.hasResource(name)){
-			return target.getProperty(name);
+			tp = target.getProperty(name);
+			resourceMap.put(sp,tp);
+			if(changes != null)
+				changes.update(sp,tp);
+			metrics.increment(ConversionMetrics.PROPERTIES_REUSED);
+			return tp;
 		}
 		
 		//System.out.println("  copy "+sp.getName());
 		
-		IProperty tp = target.createProperty(name,sp.getPropertyType());
+		tp = target.createProperty(name,sp.getPropertyType());
+		markUsed(name);
+		resourceMap.put(sp,tp);
+		if(changes != null){
+			changes.update(sp,tp);
+			changes.setCreated(tp);
+		}
+		metrics.increment(ConversionMetrics.PROPERTIES_CREATED);
 		String [] labels = sp.getLabels();
 		if(labels.length == 0){
 			tp.addLabel(sp.getName());
@@ -436,11 +950,8 @@ public class GenerateModelOntology {
 		}
 		
 			
-		// save seeAlso property
-		clearSeeAlso(tp);
-		clearSeeAlso(sp);
-		tp.addPropertyValue(getSeeAlso(tp.getOntology()),""+sp.getURI());
-		sp.addPropertyValue(getSeeAlso(sp.getOntology()),""+tp.getURI());
+		// save mapping
+		saveMapping(sp,tp);
 		
 		// add resource name to map
 		addResourceName(tp);
@@ -472,73 +983,126 @@ public class GenerateModelOntology {
 	}
 	
 	
-	private void convertDomainOntology(File sourceBreastCancer, File targetBreastCancer, File modelCancer) throws IOntologyException, URISyntaxException, FileNotFoundException {
-		OOntology source = OOntology.loadOntology(sourceBreastCancer);
-		OOntology model  = OOntology.loadOntology(modelCancer);
-		OOntology target = OOntology.createOntology(new URI(BASE_URL_PREFIX+"/deepphe/cancer/"+targetBreastCancer.getName()));
+	public void convertDomainOntology(File sourceBreastCancer, File targetBreastCancer, File modelCancer) throws IOntologyException, URISyntaxException, FileNotFoundException {
+		metrics = new ConversionMetrics(DOMAIN,sourceBreastCancer.getName());
+		metrics.phase("load");
+		domainOntology = true;
+		if(incremental && ChangeStore.isUnchanged(targetBreastCancer,sourceBreastCancer,targetBreastCancer,modelCancer)){
+			skipUnchanged(sourceBreastCancer);
+			return;
+		}
+		try{
+			OOntology target = createDomainOntology(targetBreastCancer, modelCancer);
+			if(changes != null)
+				changes.setInputs(sourceBreastCancer,targetBreastCancer,modelCancer);
+			loadNameMap(target);
+			OOntology source = loadSource(sourceBreastCancer);
+			
+			// copy properties
+			metrics.phase("properties");
+			copyProperties(source,target);
+			
+			// copy classes
+			metrics.phase("classes");
+			copyDomainClasses(source,target);
+			
+			// copy restrictions
+			metrics.phase("restrictions");
+			copyRestrictions(source,target);
+			removeStaleResources(target);
+			checkConsistency(target);
+			
+			// save
+			metrics.phase("save");
+			OntologyWriter.save(target);
+			commitChanges();
+			writeAlignment(targetBreastCancer);
+		}finally{
+			closeChanges();
+		}
+		metrics.finish();
+		System.out.println(metrics);
+	}
 	
-		// add import
-		target.addImportedOntology(model);
-		target.write(new FileOutputStream(targetBreastCancer),IOntology.OWL_FORMAT);
-		target.dispose();
-		
-		// reload target to trigger model load
-		target = OOntology.loadOntology(targetBreastCancer);
-		loadNameMap(target);
-		
-		// copy properties
-		for(IProperty p: source.getTopDataProperty().getSubProperties())
-			copyProperty(p,target);
-		for(IProperty p: source.getTopObjectProperty().getSubProperties())
-			copyProperty(p,target);
-		
-		
-		// copy classes
-		for(IClass cls : source.getRoot().getDirectSubClasses())
-			copyDomainClass(cls,target);
-		
-		
-		// copy restrictions
-		for(IClass cls: target.getRoot().getSubClasses()){
-			// find matching class
-			IClass src = source.getClass(getDisplayName(cls));
-			if(src != null){
-				copyRestrictions(src,cls);
+	/**
+	 * create domain ontology file that imports a given model
+	 * @param targetBreastCancer
+	 * @param modelCancer
+	 * @return
+	 */
+	OOntology createDomainOntology(File targetBreastCancer, File modelCancer) throws IOntologyException, URISyntaxException, FileNotFoundException {
+		if(incremental){
+			changes = new ChangeStore(targetBreastCancer);
+			if(targetBreastCancer.exists()){
+				System.out.println("updating: "+targetBreastCancer.getAbsolutePath());
+				OOntology target = OOntology.loadOntology(targetBreastCancer);
+				addModelImport(target,modelCancer);
+				return target;
 			}
+			// nothing to update, so every class is new
+			changes.clear();
 		}
 		
-		// save
-		target.save();
-		
+		OOntology target = OOntology.createOntology(new URI(BASE_URL_PREFIX+"/deepphe/cancer/"+targetBreastCancer.getName()));
+	
+		// add import, model is loaded into target's manager, so there is no need to save and reload target
+		addModelImport(target,modelCancer);
+		OntologyImports.setLocation(target,targetBreastCancer);
+		return target;
+	}
+	
+	/**
+	 * import model into domain ontology, from shared model if there is one for this file
+	 * @param target
+	 * @param modelCancer
+	 * @throws IOntologyException
+	 */
+	private void addModelImport(OOntology target, File modelCancer) throws IOntologyException {
+		if(sharedModel != null && sharedModel.isCurrent() && sharedModel.getFile().equals(modelCancer.getAbsoluteFile()))
+			OntologyImports.addImport(target,sharedModel);
+		else
+			OntologyImports.addImport(target,modelCancer);
+	}
+	
+	/**
+	 * copy top level source classes under their model parents
+	 * @param source
+	 * @param target
+	 */
+	void copyDomainClasses(OOntology source, OOntology target){
+		getAlignment(source);
+		for(IClass cls : source.getRoot().getDirectSubClasses())
+			copyDomainClass(cls,target);
 	}
 
 
+	/**
+	 * copy source class and all of its sub-classes that have model parents.
+	 * The hierarchy is walked from a work queue, a class reachable through several parents is only visited once
+	 * @param source
+	 * @param target
+	 */
 	private void copyDomainClass(IClass source, OOntology target) {
-		// does this class has special annotation
-		IProperty hasModel = source.getOntology().getProperty("hasModel");
-		String parentName = (String) source.getPropertyValue(hasModel);
-		if(parentName != null && getModelName(parentName) != null){
-			IClass targetClass = target.getClass(getModelName(parentName));
+		WorkQueue<IClass> queue = new WorkQueue<IClass>(true);
+		queue.push(source);
+		for(IClass cls = queue.pop(); cls != null; cls = queue.pop()){
+			copyDomainClassOnly(cls,target);
+			queue.pushAll(cls.getDirectSubClasses());
+		}
+	}
+	
+	/**
+	 * copy source class under its model parent (without visiting its sub-classes)
+	 * @param source
+	 * @param target
+	 */
+	private void copyDomainClassOnly(IClass source, OOntology target) {
+		// model parents from hasModel annotation or from special cases s.a. MedicationStatement = Medication
+		for(String name: alignment.getModelParents(source)){
+			IClass targetClass = target.getClass(name);
 			if(targetClass != null){
 				copyClass(source,targetClass);
 			}
-		}else{
-			// some special cases s.a. MedicationStatement = Medication
-			for(String nlpClassName: equivalenceMap.keySet()){
-				String modelClassName = equivalenceMap.get(nlpClassName);
-				IClass medSt = source.getOntology().getClass(nlpClassName);
-				if(source.hasDirectSuperClass(medSt)){
-					IClass targetClass = target.getClass(getModelName(modelClassName));
-					if(targetClass != null){
-						copyClass(source,targetClass);
-					}
-				}
-			}
-		}
-		
-		// recurse
-		for(IClass c : source.getDirectSubClasses()){
-			copyDomainClass(c,target);
 		}
 	}
 
@@ -0,0 +1,327 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+
+/**
+ * class hierarchy of an ontology walked once from its root, so that descendant, ancestor, leaf and is-a
+ * queries do not recompute the transitive closure through OWL-API.
+ * Classes are numbered in post-order, every class keeps the merged intervals of post-order numbers of its
+ * descendants (and, over the inverted hierarchy, of its ancestors). In a tree that is a single interval per class,
+ * a class with several parents only adds a few more. An is-a check is a binary search over those intervals.
+ * Sub-classes added with addSubClass() (or removed with removeSubClass()) keep leaf queries current right away,
+ * intervals are renumbered the next time a closure query needs them.
+ * The index is not thread safe.
+ */
+public class HierarchyIndex {
+	private IOntology ontology;
+	private IClass root;
+	private Map<String,Integer> numbers = new HashMap<String, Integer>();
+	private List<IClass> classes = new ArrayList<IClass>();
+	private List<List<Integer>> children = new ArrayList<List<Integer>>();
+	private List<List<Integer>> parents = new ArrayList<List<Integer>>();
+	private Labels down, up;
+
+	/**
+	 * post-order numbering of a hierarchy with descendant intervals of every class
+	 */
+	private static class Labels {
+		int [] order, byOrder;
+		int [][] intervals;
+
+		/**
+		 * is class with a given post-order number within intervals of class n
+		 */
+		boolean contains(int n, int number){
+			int [] in = intervals[n];
+			int lo = 0, hi = in.length/2-1;
+			while(lo <= hi){
+				int mid = (lo+hi) >>> 1;
+				if(number < in[2*mid])
+					hi = mid-1;
+				else if(number > in[2*mid+1])
+					lo = mid+1;
+				else
+					return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * index hierarchy of an ontology (with its imports) starting from its root
+	 * @param root
+	 */
+	public HierarchyIndex(IClass root){
+		this.root = root;
+		this.ontology = root.getOntology();
+		// walk the hierarchy from the root, a class with several parents is only expanded once
+		WorkQueue<IClass> queue = new WorkQueue<IClass>();
+		queue.push(root);
+		add(root);
+		for(IClass cls = queue.pop(); cls != null; cls = queue.pop()){
+			int n = numbers.get(key(cls));
+			for(IClass c: cls.getDirectSubClasses()){
+				boolean known = numbers.containsKey(key(c));
+				link(n,add(c));
+				if(!known)
+					queue.push(c);
+			}
+		}
+	}
+
+	public IOntology getOntology() {
+		return ontology;
+	}
+
+	public IClass getRoot() {
+		return root;
+	}
+
+	/**
+	 * number of indexed classes (including root)
+	 * @return
+	 */
+	public int size(){
+		return classes.size();
+	}
+
+	private static String key(IClass cls){
+		return ""+cls.getURI();
+	}
+
+	private int add(IClass cls){
+		String key = key(cls);
+		Integer n = numbers.get(key);
+		if(n == null){
+			n = classes.size();
+			numbers.put(key,n);
+			classes.add(cls);
+			children.add(new ArrayList<Integer>(2));
+			parents.add(new ArrayList<Integer>(1));
+		}
+		return n;
+	}
+
+	private boolean link(int parent, int child){
+		if(parent == child || children.get(parent).contains(child))
+			return false;
+		children.get(parent).add(child);
+		parents.get(child).add(parent);
+		return true;
+	}
+
+	/**
+	 * record a sub-class that was added to the ontology after the index was built
+	 * @param parent
+	 * @param child
+	 */
+	public void addSubClass(IClass parent, IClass child){
+		if(!numbers.containsKey(key(parent)))
+			return;
+		if(link(add(parent),add(child))){
+			down = null;
+			up = null;
+		}
+	}
+
+	/**
+	 * forget a sub-class link that was removed from the ontology after the index was built
+	 * @param parent
+	 * @param child
+	 */
+	public void removeSubClass(IClass parent, IClass child){
+		Integer p = numbers.get(key(parent)), c = numbers.get(key(child));
+		if(p == null || c == null)
+			return;
+		if(children.get(p).remove(c)){
+			parents.get(c).remove(p);
+			down = null;
+			up = null;
+		}
+	}
+
+	/**
+	 * is class in the indexed hierarchy
+	 * @param cls
+	 * @return
+	 */
+	public boolean contains(IClass cls){
+		return numbers.containsKey(key(cls));
+	}
+
+	/**
+	 * does class have no sub-classes
+	 * @param cls
+	 * @return
+	 */
+	public boolean isLeaf(IClass cls){
+		Integer n = numbers.get(key(cls));
+		return n == null || children.get(n).isEmpty();
+	}
+
+	/**
+	 * is class a (direct or indirect) sub-class of another class
+	 * @param cls
+	 * @param parent
+	 * @return
+	 */
+	public boolean isSubClassOf(IClass cls, IClass parent){
+		Integer c = numbers.get(key(cls)), p = numbers.get(key(parent));
+		if(c == null || p == null || c.equals(p))
+			return false;
+		Labels l = getDown();
+		return l.contains(p,l.order[c]);
+	}
+
+	/**
+	 * all sub-classes of a class (transitive closure) in post-order
+	 * @param cls
+	 * @return
+	 */
+	public List<IClass> getSubClasses(IClass cls){
+		Integer n = numbers.get(key(cls));
+		return (n == null)?new ArrayList<IClass>():getClosure(getDown(),n);
+	}
+
+	/**
+	 * all super-classes of a class (transitive closure) up to the root
+	 * @param cls
+	 * @return
+	 */
+	public List<IClass> getSuperClasses(IClass cls){
+		Integer n = numbers.get(key(cls));
+		return (n == null)?new ArrayList<IClass>():getClosure(getUp(),n);
+	}
+
+	private List<IClass> getClosure(Labels l, int n){
+		List<IClass> list = new ArrayList<IClass>();
+		int [] in = l.intervals[n];
+		for(int i=0;i<in.length;i+=2){
+			for(int o=in[i];o<=in[i+1];o++){
+				int c = l.byOrder[o];
+				if(c != n)
+					list.add(classes.get(c));
+			}
+		}
+		return list;
+	}
+
+	private Labels getDown(){
+		if(down == null){
+			down = label(children,new int [] {0});
+		}
+		return down;
+	}
+
+	private Labels getUp(){
+		if(up == null){
+			// roots of inverted hierarchy are the leaves
+			int [] leaves = new int [classes.size()];
+			int k = 0;
+			for(int i=0;i<classes.size();i++){
+				if(children.get(i).isEmpty())
+					leaves[k++] = i;
+			}
+			up = label(parents,Arrays.copyOf(leaves,k));
+		}
+		return up;
+	}
+
+	/**
+	 * number classes in post-order and merge intervals of every class with intervals of its children
+	 * @param edges - children of every class
+	 * @param roots - where to start
+	 * @return
+	 */
+	private Labels label(List<List<Integer>> edges, int [] roots){
+		int size = classes.size();
+		Labels l = new Labels();
+		l.order = new int [size];
+		l.byOrder = new int [size];
+		l.intervals = new int [size][];
+		Arrays.fill(l.order,-1);
+		int next = 0;
+		// explicit stack of (class, index of next child)
+		int [] stack = new int [2*size];
+		boolean [] visited = new boolean [size];
+		for(int r: roots){
+			if(visited[r])
+				continue;
+			int top = 0;
+			stack[0] = r;
+			stack[1] = 0;
+			visited[r] = true;
+			while(top >= 0){
+				int n = stack[2*top];
+				List<Integer> e = edges.get(n);
+				if(stack[2*top+1] < e.size()){
+					int c = e.get(stack[2*top+1]++);
+					if(!visited[c]){
+						visited[c] = true;
+						top++;
+						stack[2*top] = c;
+						stack[2*top+1] = 0;
+					}
+				}else{
+					l.order[n] = next;
+					l.byOrder[next] = n;
+					next++;
+					l.intervals[n] = merge(l,n,e);
+					top--;
+				}
+			}
+		}
+		// classes that can't be reached from the roots (should not happen in a hierarchy)
+		for(int n=0;n<size;n++){
+			if(l.order[n] < 0){
+				l.order[n] = next;
+				l.byOrder[next++] = n;
+				l.intervals[n] = new int [] {l.order[n],l.order[n]};
+			}
+		}
+		return l;
+	}
+
+	/**
+	 * intervals of a class: its own number and intervals of its children merged
+	 */
+	private static int [] merge(Labels l, int n, List<Integer> edges){
+		if(edges.isEmpty())
+			return new int [] {l.order[n],l.order[n]};
+		List<int []> list = new ArrayList<int[]>();
+		list.add(new int [] {l.order[n],l.order[n]});
+		for(int c: edges){
+			int [] in = l.intervals[c];
+			// child that is still on the stack closes a cycle
+			if(in == null)
+				continue;
+			for(int i=0;i<in.length;i+=2)
+				list.add(new int [] {in[i],in[i+1]});
+		}
+		int [][] all = list.toArray(new int [0][]);
+		Arrays.sort(all,new Comparator<int []>() {
+			public int compare(int[] a, int[] b) {
+				return a[0]-b[0];
+			}
+		});
+		int [] merged = new int [2*all.length];
+		int k = 0;
+		for(int [] in: all){
+			if(k > 0 && in[0] <= merged[k-1]+1){
+				merged[k-1] = Math.max(merged[k-1],in[1]);
+			}else{
+				merged[k++] = in[0];
+				merged[k++] = in[1];
+			}
+		}
+		return Arrays.copyOf(merged,k);
+	}
+}
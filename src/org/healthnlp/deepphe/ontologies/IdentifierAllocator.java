@@ -0,0 +1,128 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.util.BitSet;
+import java.util.Iterator;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+
+/**
+ * allocate DP%06d identifiers for new resources in a target ontology.
+ * Identifiers that are already used in the target are scanned once into a bitset,
+ * free identifiers are then handed out in increasing order starting from a given index,
+ * which is the same order the old format-and-probe loop produced, so IDs are stable across runs.
+ * Resources that a conversion creates under a name it did not get from the allocator (s.a. a name kept in
+ * a mapping registry or rdfs:seeAlso) have to be marked used, so that the name is not handed out again.
+ * Conversions allocate from a single thread, the allocator is not thread safe.
+ */
+public class IdentifierAllocator {
+	public static final String PREFIX = "DP";
+	public static final int DIGITS = 6;
+
+	private final BitSet used;
+	private int cursor;
+
+	/**
+	 * scan identifiers used in target ontology
+	 * @param target
+	 * @param start - first index to hand out
+	 */
+	public IdentifierAllocator(IOntology target, int start){
+		used = new BitSet();
+		for(Iterator<IResource> it = target.getAllResources();it.hasNext();){
+			IResource r = it.next();
+			if(r != null){
+				int id = parse(r.getName());
+				if(id >= 0)
+					used.set(id);
+			}
+		}
+		cursor = start;
+	}
+
+	/**
+	 * parse DP identifier
+	 * @param name
+	 * @return numeric identifier or -1 if name is not a DP identifier
+	 */
+	public static int parse(String name){
+		if(name == null || name.length() < PREFIX.length()+DIGITS || !name.startsWith(PREFIX))
+			return -1;
+		int id = 0;
+		for(int i=PREFIX.length();i<name.length();i++){
+			char c = name.charAt(i);
+			if(c < '0' || c > '9' || id > (Integer.MAX_VALUE-9)/10)
+				return -1;
+			id = id*10+(c-'0');
+		}
+		return id;
+	}
+
+	/**
+	 * format numeric identifier as DP%06d
+	 * @param id
+	 * @return
+	 */
+	public static String format(int id){
+		String digits = Integer.toString(id);
+		char [] name = new char [PREFIX.length()+Math.max(DIGITS,digits.length())];
+		PREFIX.getChars(0,PREFIX.length(),name,0);
+		int pad = name.length-PREFIX.length()-digits.length();
+		for(int i=0;i<pad;i++)
+			name[PREFIX.length()+i] = '0';
+		digits.getChars(0,digits.length(),name,PREFIX.length()+pad);
+		return new String(name);
+	}
+
+	/**
+	 * next free identifier
+	 * @return
+	 */
+	public int next(){
+		int id = used.nextClearBit(cursor);
+		cursor = id+1;
+		return id;
+	}
+
+	/**
+	 * mark identifier as used, so it is not handed out
+	 * @param id
+	 */
+	public void markUsed(int id){
+		if(id >= 0)
+			used.set(id);
+	}
+
+	/**
+	 * mark name of a resource as used, names that are not DP identifiers are ignored
+	 * @param name
+	 */
+	public void markUsed(String name){
+		markUsed(parse(name));
+	}
+
+	/**
+	 * is identifier used in target ontology or marked used
+	 * @param id
+	 * @return
+	 */
+	public boolean isUsed(int id){
+		return id >= 0 && used.get(id);
+	}
+
+	/**
+	 * next free resource name
+	 * @return
+	 */
+	public String nextName(){
+		return format(next());
+	}
+
+	/**
+	 * index that will be tried next
+	 * @return
+	 */
+	public int getCursor(){
+		return cursor;
+	}
+}
@@ -0,0 +1,142 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+
+/**
+ * index of resources by normalized label (first label or name without whitespace) and by name.
+ * Built once per ontology and updated as resources are created, so a label lookup is a single
+ * hash lookup and labels are normalized once per resource without compiling a regex.
+ */
+public class LabelIndex {
+	private Map<String,IResource> byLabel = new HashMap<String, IResource>();
+	private Map<String,IResource> byName = new HashMap<String, IResource>();
+	private Map<String,String> labels = new HashMap<String, String>();
+
+	public LabelIndex(){}
+
+	/**
+	 * index resources
+	 * @param resources - iterator over ontology resources s.a. getAllResources() or getAllClasses()
+	 */
+	public LabelIndex(Iterator<? extends IResource> resources){
+		while(resources.hasNext()){
+			add(resources.next());
+		}
+	}
+
+	/**
+	 * add resource to index, resource that is added later wins for the same label
+	 * @param o
+	 */
+	public void add(Object o){
+		if(o instanceof IResource){
+			IResource r = (IResource) o;
+			String name = r.getName();
+			String label = getDisplayName(r);
+			labels.put(name,label);
+			byLabel.put(label,r);
+			byName.put(name,r);
+		}
+	}
+
+	/**
+	 * get resource by normalized label
+	 * @param label
+	 * @return
+	 */
+	public IResource get(String label){
+		return byLabel.get(label);
+	}
+
+	/**
+	 * get resource name by normalized label
+	 * @param label
+	 * @return
+	 */
+	public String getName(String label){
+		IResource r = byLabel.get(label);
+		return (r == null)?null:r.getName();
+	}
+
+	/**
+	 * get normalized label of a resource by its name
+	 * @param name
+	 * @return
+	 */
+	public String getLabel(String name){
+		return labels.get(name);
+	}
+
+	/**
+	 * get normalized label of indexed resource, label is only computed for resources outside index
+	 * @param r
+	 * @return
+	 */
+	public String getLabel(IResource r){
+		String label = labels.get(r.getName());
+		return (label == null)?getDisplayName(r):label;
+	}
+
+	/**
+	 * get indexed class by name
+	 * @param name
+	 * @return
+	 */
+	public IClass getClass(String name){
+		IResource r = byName.get(name);
+		return (r instanceof IClass)?(IClass)r:null;
+	}
+
+	/**
+	 * all normalized labels in index
+	 * @return
+	 */
+	public Set<String> getLabels(){
+		return byLabel.keySet();
+	}
+
+	public int size(){
+		return byName.size();
+	}
+
+	/**
+	 * first label (or name) of a resource without whitespace
+	 * @param r
+	 * @return
+	 */
+	public static String getDisplayName(IResource r){
+		String [] l = r.getLabels();
+		return normalize((l.length > 0)?l[0]:r.getName());
+	}
+
+	/**
+	 * remove whitespace (same characters as \s in regular expressions)
+	 * @param s
+	 * @return
+	 */
+	public static String normalize(String s){
+		int i = 0, n = s.length();
+		while(i < n && !isWhitespace(s.charAt(i)))
+			i++;
+		if(i == n)
+			return s;
+		StringBuilder b = new StringBuilder(n);
+		b.append(s,0,i);
+		for(;i<n;i++){
+			char c = s.charAt(i);
+			if(!isWhitespace(c))
+				b.append(c);
+		}
+		return b.toString();
+	}
+
+	private static boolean isWhitespace(char c){
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+}
@@ -0,0 +1,136 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jdbm.DB;
+import org.apache.jdbm.DBMaker;
+
+/**
+ * persistent two way mapping between source resource URIs and DP resource URIs they were converted to.
+ * Mappings are kept in JDBM B-trees outside of the ontologies, so conversions do not have to record them
+ * as rdfs:seeAlso values on source resources and save the whole source ontology to keep them.
+ * The registry can be shared by conversions running in parallel, each conversion should then work in its own
+ * transaction (see begin()), so that committing one conversion does not also commit what another has only half done.
+ */
+public class MappingRegistry {
+	private static final String SOURCE_TO_TARGET = "source2target", TARGET_TO_SOURCE = "target2source";
+	private DB db;
+	private Map<String,String> source2target, target2source;
+	private MappingRegistry parent;
+
+	/**
+	 * open (or create) mapping registry
+	 * @param file
+	 */
+	public MappingRegistry(File file){
+		if(file.getAbsoluteFile().getParentFile() != null)
+			file.getAbsoluteFile().getParentFile().mkdirs();
+		db = DBMaker.openFile(file.getAbsolutePath()).disableLocking().useRandomAccessFile().enableMRUCache().make();
+		source2target = getMap(SOURCE_TO_TARGET);
+		target2source = getMap(TARGET_TO_SOURCE);
+	}
+
+	/**
+	 * transaction of a shared registry, puts are kept in memory until commit()
+	 * @param parent
+	 */
+	private MappingRegistry(MappingRegistry parent){
+		this.parent = parent;
+		source2target = new HashMap<String, String>();
+		target2source = new HashMap<String, String>();
+	}
+
+	/**
+	 * start a transaction on this registry: reads see its own puts and whatever was committed to the registry,
+	 * puts reach the registry only when the transaction is committed, close() drops the puts that were not committed
+	 * @return
+	 */
+	public MappingRegistry begin(){
+		return new MappingRegistry(this);
+	}
+
+	private Map<String,String> getMap(String name){
+		Map<String,String> map = db.getTreeMap(name);
+		if(map == null)
+			map = db.createTreeMap(name);
+		return map;
+	}
+
+	/**
+	 * get DP resource URI for a source resource
+	 * @param source
+	 * @return URI or null if source was never converted
+	 */
+	public synchronized String getTarget(URI source){
+		String t = source2target.get(""+source);
+		return (t == null && parent != null)?parent.getTarget(source):t;
+	}
+
+	/**
+	 * get source resource URI for a DP resource
+	 * @param target
+	 * @return URI or null
+	 */
+	public synchronized String getSource(URI target){
+		String s = target2source.get(""+target);
+		if(s == null && parent != null){
+			s = parent.getSource(target);
+			// source was mapped to a different target in this transaction
+			if(s != null && source2target.containsKey(s))
+				return null;
+		}
+		return s;
+	}
+
+	/**
+	 * record mapping of source resource to DP resource, replacing previous mapping of that source
+	 * @param source
+	 * @param target
+	 */
+	public synchronized void put(URI source, URI target){
+		String s = ""+source, t = ""+target;
+		String previous = source2target.put(s,t);
+		if(previous != null && !previous.equals(t))
+			target2source.remove(previous);
+		target2source.put(t,s);
+	}
+
+	public synchronized int size(){
+		if(parent == null)
+			return source2target.size();
+		int n = parent.size();
+		for(String s: source2target.keySet()){
+			if(parent.getTarget(URI.create(s)) == null)
+				n++;
+		}
+		return n;
+	}
+
+	public synchronized void commit(){
+		if(parent == null){
+			db.commit();
+			return;
+		}
+		// puts of a transaction reach the registry together with a commit of the registry
+		synchronized(parent){
+			for(Map.Entry<String,String> e: source2target.entrySet())
+				parent.put(URI.create(e.getKey()),URI.create(e.getValue()));
+			parent.commit();
+		}
+		source2target.clear();
+		target2source.clear();
+	}
+
+	public synchronized void close(){
+		if(parent != null){
+			source2target.clear();
+			target2source.clear();
+			return;
+		}
+		db.commit();
+		db.close();
+	}
+}
@@ -0,0 +1,554 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+import edu.pitt.dbmi.nlp.noble.ontology.IResourceIterator;
+import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
+
+/**
+ * check that classes and properties named in transmart mapping specs (mapping/*-mapping-spec.txt and .xlsx)
+ * exist in a generated model ontology.
+ * Names and labels of model classes and properties are indexed once, without whitespace and case,
+ * then every spec row is resolved with hash lookups as it is read. Spec files are validated in parallel.
+ * A value is unresolved if it matches nothing and ambiguous if it matches more than one resource.
+ */
+public class MappingSpecValidator {
+	public static final String CLASS = "Class";
+	public static final String REQUIRED_AVS = "Required Avs";
+	public static final String PROPERTY = "Property to Return Value";
+	static final Pattern RESTRICTION = Pattern.compile("\\s+(some|only|value)\\s+");
+	private Map<String,Set<String>> classes = new HashMap<String, Set<String>>();
+	private Map<String,Set<String>> properties = new HashMap<String, Set<String>>();
+	private Set<String> objectProperties = new HashSet<String>();
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * problem with a value in a spec file
+	 */
+	public static class Problem {
+		private File file;
+		private int row;
+		private String column, value;
+		private Set<String> candidates;
+
+		Problem(File file, int row, String column, String value, Set<String> candidates){
+			this.file = file;
+			this.row = row;
+			this.column = column;
+			this.value = value;
+			this.candidates = candidates;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * row number, header is row 1
+		 * @return
+		 */
+		public int getRow() {
+			return row;
+		}
+
+		public String getColumn() {
+			return column;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		/**
+		 * URIs of resources that value matches (empty if value is unresolved)
+		 * @return
+		 */
+		public Set<String> getCandidates() {
+			return candidates;
+		}
+
+		public boolean isAmbiguous(){
+			return !candidates.isEmpty();
+		}
+
+		public String toString(){
+			String s = file.getName()+":"+row+" "+column+" '"+value+"' ";
+			return s+(isAmbiguous()?"is ambiguous: "+candidates:"is unresolved");
+		}
+	}
+
+	/**
+	 * reader of spec rows
+	 */
+	static abstract class Rows {
+		/**
+		 * next row
+		 * @return row values or null at the end
+		 */
+		abstract List<String> next() throws IOException;
+		abstract void close() throws IOException;
+	}
+
+	/**
+	 * tab delimited spec
+	 */
+	private static class TextRows extends Rows {
+		private BufferedReader reader;
+
+		TextRows(File file) throws IOException{
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),"UTF-8"));
+		}
+
+		List<String> next() throws IOException {
+			String line = reader.readLine();
+			return (line == null)?null:Arrays.asList(line.split("\t",-1));
+		}
+
+		void close() throws IOException {
+			reader.close();
+		}
+	}
+
+	/**
+	 * first sheet of an Excel (.xlsx) spec, rows are streamed out of the sheet XML
+	 */
+	private static class SheetRows extends Rows {
+		private ZipFile zip;
+		private InputStream in;
+		private XMLStreamReader reader;
+		private List<String> strings = new ArrayList<String>();
+
+		SheetRows(File file) throws IOException{
+			zip = new ZipFile(file);
+			try{
+				XMLInputFactory factory = XMLInputFactory.newInstance();
+				ZipEntry shared = zip.getEntry("xl/sharedStrings.xml");
+				if(shared != null)
+					readStrings(factory,zip.getInputStream(shared));
+				ZipEntry sheet = zip.getEntry("xl/worksheets/sheet1.xml");
+				if(sheet == null)
+					throw new IOException("No worksheet in "+file);
+				in = zip.getInputStream(sheet);
+				reader = factory.createXMLStreamReader(in);
+			}catch(XMLStreamException e){
+				close();
+				throw new IOException("Unable to read "+file,e);
+			}
+		}
+
+		private void readStrings(XMLInputFactory factory, InputStream is) throws XMLStreamException, IOException{
+			try{
+				XMLStreamReader r = factory.createXMLStreamReader(is);
+				StringBuilder b = null;
+				while(r.hasNext()){
+					int e = r.next();
+					if(e == XMLStreamReader.START_ELEMENT && "si".equals(r.getLocalName())){
+						b = new StringBuilder();
+					}else if(e == XMLStreamReader.START_ELEMENT && "t".equals(r.getLocalName()) && b != null){
+						b.append(r.getElementText());
+					}else if(e == XMLStreamReader.END_ELEMENT && "si".equals(r.getLocalName())){
+						strings.add(b.toString());
+						b = null;
+					}
+				}
+				r.close();
+			}finally{
+				is.close();
+			}
+		}
+
+		List<String> next() throws IOException {
+			try{
+				List<String> row = null;
+				int column = 0;
+				String type = null;
+				StringBuilder value = null;
+				while(reader.hasNext()){
+					int e = reader.next();
+					if(e == XMLStreamReader.START_ELEMENT){
+						String name = reader.getLocalName();
+						if("row".equals(name)){
+							row = new ArrayList<String>();
+						}else if("c".equals(name) && row != null){
+							column = getColumn(reader.getAttributeValue(null,"r"),row.size());
+							type = reader.getAttributeValue(null,"t");
+							value = new StringBuilder();
+						}else if(("v".equals(name) || "t".equals(name)) && value != null){
+							value.append(reader.getElementText());
+						}
+					}else if(e == XMLStreamReader.END_ELEMENT){
+						String name = reader.getLocalName();
+						if("c".equals(name) && row != null){
+							while(row.size() < column)
+								row.add("");
+							String s = value.toString();
+							if("s".equals(type) && s.length() > 0)
+								s = strings.get(Integer.parseInt(s.trim()));
+							row.add(s);
+							value = null;
+						}else if("row".equals(name)){
+							return row;
+						}
+					}
+				}
+				return null;
+			}catch(XMLStreamException e){
+				throw new IOException(e);
+			}
+		}
+
+		/**
+		 * zero based column of a cell reference s.a. J12
+		 */
+		private static int getColumn(String ref, int next){
+			if(ref == null)
+				return next;
+			int c = 0;
+			for(int i=0;i<ref.length() && Character.isLetter(ref.charAt(i));i++)
+				c = c*26+(Character.toUpperCase(ref.charAt(i))-'A'+1);
+			return c-1;
+		}
+
+		void close() throws IOException {
+			try{
+				if(reader != null)
+					reader.close();
+			}catch(XMLStreamException e){
+				// nothing left to read
+			}
+			if(in != null)
+				in.close();
+			zip.close();
+		}
+	}
+
+	public MappingSpecValidator(){}
+
+	/**
+	 * index classes and properties of a model ontology (and its imports)
+	 * @param model
+	 */
+	public MappingSpecValidator(IOntology model){
+		IResourceIterator it = model.getAllClasses();
+		while(it.hasNext()){
+			add(classes,it.next());
+		}
+		it = model.getAllProperties();
+		while(it.hasNext()){
+			IResource r = it.next();
+			add(properties,r);
+			if(r instanceof IProperty && ((IProperty) r).isObjectProperty())
+				objectProperties.add(""+r.getURI());
+		}
+	}
+
+	/**
+	 * index classes and properties of an ontology snapshot
+	 * @param snapshot
+	 */
+	public MappingSpecValidator(OntologySnapshot snapshot){
+		for(OntologySnapshot.Resource r: snapshot.getResources()){
+			Map<String,Set<String>> index = r.isClass()?classes:r.isProperty()?properties:null;
+			if(index == null)
+				continue;
+			List<String> names = new ArrayList<String>(r.getLabels());
+			names.add(r.getName());
+			add(index,r.getURI(),names.toArray(new String [0]));
+			if(r.isProperty() && r.getValues("type ").contains(""+IProperty.OBJECT))
+				objectProperties.add(r.getURI());
+		}
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	private void add(Map<String,Set<String>> index, IResource r){
+		if(r == null)
+			return;
+		List<String> names = new ArrayList<String>(Arrays.asList(r.getLabels()));
+		names.add(r.getName());
+		add(index,""+r.getURI(),names.toArray(new String [0]));
+	}
+
+	private void add(Map<String,Set<String>> index, String uri, String... names){
+		for(String name: names){
+			String key = getKey(name);
+			Set<String> uris = index.get(key);
+			if(uris == null){
+				uris = new TreeSet<String>();
+				index.put(key,uris);
+			}
+			uris.add(uri);
+		}
+	}
+
+	/**
+	 * add class to index
+	 * @param uri
+	 * @param names - name and labels of a class
+	 */
+	public void addClass(String uri, String... names){
+		add(classes,uri,names);
+	}
+
+	/**
+	 * add property to index
+	 * @param uri
+	 * @param names - name and labels of a property
+	 */
+	public void addProperty(String uri, String... names){
+		add(properties,uri,names);
+	}
+
+	/**
+	 * add object property to index
+	 * @param uri
+	 * @param names - name and labels of a property
+	 */
+	public void addObjectProperty(String uri, String... names){
+		add(properties,uri,names);
+		objectProperties.add(uri);
+	}
+
+	/**
+	 * is property an object property, whose values are individuals rather than literals
+	 * @param uri
+	 * @return
+	 */
+	public boolean isObjectProperty(String uri){
+		return objectProperties.contains(uri);
+	}
+
+	/**
+	 * index key of a name or a label
+	 */
+	private static String getKey(String name){
+		return LabelIndex.normalize(name.trim()).toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * get URI of a class by its name or label
+	 * @param name
+	 * @return null if class is unresolved or ambiguous
+	 */
+	public String getClassURI(String name){
+		return getURI(classes,name);
+	}
+
+	/**
+	 * get URI of a property by its name or label
+	 * @param name
+	 * @return null if property is unresolved or ambiguous
+	 */
+	public String getPropertyURI(String name){
+		return getURI(properties,name);
+	}
+
+	private static String getURI(Map<String,Set<String>> index, String name){
+		Set<String> uris = index.get(getKey(name));
+		return (uris != null && uris.size() == 1)?uris.iterator().next():null;
+	}
+
+	/**
+	 * open row reader of a tab delimited (.txt) or Excel (.xlsx) spec
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static Rows openRows(File file) throws IOException{
+		return file.getName().endsWith(".xlsx")?new SheetRows(file):new TextRows(file);
+	}
+
+	/**
+	 * resolve value through index
+	 * @return null if value resolves to a single resource, else problem
+	 */
+	private static Problem resolve(Map<String,Set<String>> index, File file, int row, String column, String value){
+		Set<String> uris = index.get(getKey(value));
+		if(uris == null)
+			return new Problem(file,row,column,value,Collections.<String>emptySet());
+		if(uris.size() > 1)
+			return new Problem(file,row,column,value,uris);
+		return null;
+	}
+
+	private static void add(List<Problem> problems, Problem p){
+		if(p != null)
+			problems.add(p);
+	}
+
+	/**
+	 * validate a single spec file, specs without model columns have nothing to validate
+	 * @param file - tab delimited (.txt) or Excel (.xlsx) spec
+	 * @return unresolved and ambiguous values
+	 * @throws IOException
+	 */
+	public List<Problem> validate(File file) throws IOException{
+		List<Problem> problems = new ArrayList<Problem>();
+		Rows rows = openRows(file);
+		try{
+			List<String> header = rows.next();
+			if(header == null)
+				return problems;
+			int cls = indexOf(header,CLASS), avs = indexOf(header,REQUIRED_AVS), prop = indexOf(header,PROPERTY);
+			int n = 1;
+			for(List<String> row = rows.next(); row != null; row = rows.next()){
+				n++;
+				String value = get(row,cls);
+				if(value.length() > 0)
+					add(problems,resolve(classes,file,n,CLASS,value));
+				value = get(row,prop);
+				if(value.length() > 0)
+					add(problems,resolve(properties,file,n,PROPERTY,value));
+				value = get(row,avs);
+				if(value.length() > 0){
+					// property [some|only|value class]
+					String [] p = RESTRICTION.split(value,2);
+					add(problems,resolve(properties,file,n,REQUIRED_AVS,p[0]));
+					if(p.length > 1)
+						add(problems,resolve(classes,file,n,REQUIRED_AVS,p[1]));
+				}
+			}
+		}finally{
+			rows.close();
+		}
+		return problems;
+	}
+
+	/**
+	 * validate several spec files in parallel
+	 * @param files
+	 * @return problems of each file in the same order as files
+	 * @throws IOException
+	 */
+	public Map<File,List<Problem>> validate(List<File> files) throws IOException{
+		List<Callable<List<Problem>>> tasks = new ArrayList<Callable<List<Problem>>>();
+		for(final File f: files){
+			tasks.add(new Callable<List<Problem>>() {
+				public List<Problem> call() throws Exception {
+					return validate(f);
+				}
+			});
+		}
+		Map<File,List<Problem>> results = new LinkedHashMap<File, List<Problem>>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,Math.min(threads,files.size())));
+		try{
+			List<Future<List<Problem>>> futures = executor.invokeAll(tasks);
+			for(int i=0;i<files.size();i++){
+				results.put(files.get(i),futures.get(i).get());
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Validation was interrupted",e);
+		}catch(ExecutionException e){
+			Throwable t = e.getCause();
+			if(t instanceof IOException)
+				throw (IOException) t;
+			throw new IOException(t);
+		}finally{
+			executor.shutdown();
+		}
+		return results;
+	}
+
+	static int indexOf(List<String> header, String column){
+		for(int i=0;i<header.size();i++){
+			if(column.equalsIgnoreCase(header.get(i).trim()))
+				return i;
+		}
+		return -1;
+	}
+
+	static String get(List<String> row, int i){
+		return (i > -1 && i < row.size())?row.get(i).trim():"";
+	}
+
+	/**
+	 * spec files of a directory
+	 * @param dir
+	 * @return
+	 */
+	public static List<File> getSpecFiles(File dir){
+		List<File> files = new ArrayList<File>();
+		File [] list = dir.listFiles();
+		if(list != null){
+			Arrays.sort(list);
+			for(File f: list){
+				if(f.getName().contains("mapping-spec") && (f.getName().endsWith(".txt") || f.getName().endsWith(".xlsx")))
+					files.add(f);
+			}
+		}
+		return files;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length == 0){
+			System.err.println("Usage: java "+MappingSpecValidator.class.getName()+" [-cache <snapshot directory>] <model ontology> [spec files or directories]");
+			System.err.println("Ex: java "+MappingSpecValidator.class.getName()+" cancer_models/breastCancer.owl mapping/");
+			return;
+		}
+		File cache = null;
+		int start = 0;
+		if("-cache".equals(args[0]) && args.length > 2){
+			cache = new File(args[1]);
+			start = 2;
+		}
+		List<File> files = new ArrayList<File>();
+		for(int i=start+1;i<args.length;i++){
+			File f = new File(args[i]);
+			if(f.isDirectory())
+				files.addAll(getSpecFiles(f));
+			else
+				files.add(f);
+		}
+		if(files.isEmpty())
+			files.addAll(getSpecFiles(new File("mapping")));
+		long time = System.currentTimeMillis();
+		File model = new File(args[start]);
+		MappingSpecValidator validator = (cache != null)?new MappingSpecValidator(OntologySnapshot.load(model,cache)):
+			new MappingSpecValidator(OOntology.loadOntology(model));
+		int count = 0;
+		Map<File,List<Problem>> results = validator.validate(files);
+		for(File f: results.keySet()){
+			for(Problem p: results.get(f)){
+				System.out.println(p);
+				count++;
+			}
+		}
+		System.out.println("validated "+files.size()+" spec files in "+(System.currentTimeMillis()-time)+" ms, "+count+" problems");
+		if(count > 0)
+			System.exit(1);
+	}
+}
@@ -0,0 +1,131 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+import edu.pitt.dbmi.nlp.noble.ontology.IResourceIterator;
+
+/**
+ * alignment of NLP (source) classes to model classes.
+ * Every source class is visited once to collect its name, its hasModel annotation and
+ * configured equivalences of its direct super classes (s.a. MedicationStatement = Medication),
+ * then source names are joined with normalized labels of model classes through hash maps.
+ * Model labels are looked up in a LabelIndex, so classes added to the model while it is being
+ * converted are aligned as well.
+ */
+public class OntologyAlignment {
+	public static final String HAS_MODEL = "hasModel";
+	public static final String LABEL = "label", EQUIVALENCE = "equivalence";
+	private IOntology source;
+	private LabelIndex model;
+	private Map<String,IClass> sourceByName = new HashMap<String, IClass>();
+	private Map<String,List<String []>> parents = new LinkedHashMap<String, List<String[]>>();
+
+	/**
+	 * build alignment
+	 * @param source - NLP ontology
+	 * @param model - index of model labels
+	 * @param equivalences - NLP class name to model class label, sub-classes of NLP class go under model class
+	 */
+	public OntologyAlignment(IOntology source, LabelIndex model, Map<String,String> equivalences){
+		this.source = source;
+		this.model = model;
+		IProperty hasModel = source.getProperty(HAS_MODEL);
+		IResourceIterator it = source.getAllClasses();
+		while(it.hasNext()){
+			IClass cls = (IClass) it.next();
+			if(cls == null)
+				continue;
+			sourceByName.put(cls.getName(),cls);
+			List<String []> list = new ArrayList<String []>(1);
+			Object value = (hasModel != null)?cls.getPropertyValue(hasModel):null;
+			if(value != null)
+				list.add(new String [] {value.toString(),HAS_MODEL});
+			if(!equivalences.isEmpty()){
+				for(IClass p: cls.getDirectSuperClasses()){
+					String label = equivalences.get(p.getName());
+					if(label != null)
+						list.add(new String [] {label,EQUIVALENCE});
+				}
+			}
+			if(!list.isEmpty())
+				parents.put(""+cls.getURI(),list);
+		}
+	}
+
+	public IOntology getSource() {
+		return source;
+	}
+
+	/**
+	 * source class that a model class was made from (source name equals normalized model label)
+	 * @param label - normalized label of model class
+	 * @return
+	 */
+	public IClass getSourceClass(String label){
+		return (label == null)?null:sourceByName.get(label);
+	}
+
+	/**
+	 * names of model classes that a source class should be copied under,
+	 * a hasModel annotation that names a model class wins over equivalences
+	 * @param cls - source class
+	 * @return
+	 */
+	public List<String> getModelParents(IClass cls){
+		List<String []> list = parents.get(""+cls.getURI());
+		if(list == null)
+			return Collections.emptyList();
+		List<String> names = new ArrayList<String>(list.size());
+		for(String [] p: list){
+			String name = model.getName(p[0]);
+			if(name == null)
+				continue;
+			if(HAS_MODEL.equals(p[1]))
+				return Collections.singletonList(name);
+			names.add(name);
+		}
+		return names;
+	}
+
+	/**
+	 * write alignment table: source URI, model class name and how they were aligned, tab separated
+	 * @param w
+	 * @throws IOException
+	 */
+	public void write(Writer w) throws IOException{
+		for(String label: model.getLabels()){
+			IClass cls = sourceByName.get(label);
+			if(cls != null)
+				w.write(cls.getURI()+"\t"+model.getName(label)+"\t"+LABEL+"\n");
+		}
+		for(String uri: parents.keySet()){
+			for(String [] p: parents.get(uri)){
+				String name = model.getName(p[0]);
+				if(name != null){
+					w.write(uri+"\t"+name+"\t"+p[1]+"\n");
+					if(HAS_MODEL.equals(p[1]))
+						break;
+				}
+			}
+		}
+		w.flush();
+	}
+
+	/**
+	 * number of source classes
+	 * @return
+	 */
+	public int size(){
+		return sourceByName.size();
+	}
+}
@@ -0,0 +1,78 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntologyException;
+import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
+
+/**
+ * loaded ontologies kept in memory between conversions of a long running process.
+ * An ontology is parsed again only when its file was modified (time or size differ from when it was loaded),
+ * a tool that saves a cached ontology back to its file calls update() so the copy in memory stays current.
+ */
+public class OntologyCache {
+	private Map<File,Entry> entries = new HashMap<File, Entry>();
+
+	private static class Entry {
+		OOntology ontology;
+		long modified, length;
+	}
+
+	private static File key(File file){
+		return file.getAbsoluteFile();
+	}
+
+	/**
+	 * get ontology of a file, load it if it is not cached or file changed since it was loaded
+	 * @param file
+	 * @return
+	 * @throws IOntologyException
+	 */
+	public synchronized OOntology get(File file) throws IOntologyException {
+		Entry e = entries.get(key(file));
+		if(e == null || e.modified != file.lastModified() || e.length != file.length()){
+			e = new Entry();
+			e.modified = file.lastModified();
+			e.length = file.length();
+			e.ontology = OOntology.loadOntology(file);
+			entries.put(key(file),e);
+		}
+		return e.ontology;
+	}
+
+	/**
+	 * is a file cached and unchanged since it was loaded
+	 * @param file
+	 * @return
+	 */
+	public synchronized boolean isCurrent(File file){
+		Entry e = entries.get(key(file));
+		return e != null && e.modified == file.lastModified() && e.length == file.length();
+	}
+
+	/**
+	 * cached ontology was saved to its file
+	 * @param file
+	 */
+	public synchronized void update(File file){
+		Entry e = entries.get(key(file));
+		if(e != null){
+			e.modified = file.lastModified();
+			e.length = file.length();
+		}
+	}
+
+	/**
+	 * drop ontology of a file, s.a. when a conversion failed half way through changing it
+	 * @param file
+	 */
+	public synchronized void remove(File file){
+		entries.remove(key(file));
+	}
+
+	public synchronized int size(){
+		return entries.size();
+	}
+}
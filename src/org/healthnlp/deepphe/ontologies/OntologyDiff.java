@@ -0,0 +1,260 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+import edu.pitt.dbmi.nlp.noble.ontology.IResourceIterator;
+import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
+
+/**
+ * structural diff between two versions of an ontology.
+ * Every class, property and instance is reduced to its canonical form (see ContentHash) and hashed,
+ * versions are compared by resource URI and hash, so only resources whose hash differs are looked at
+ * line by line. Changes are reported by resource name (DP ID) with the first label.
+ * Mapping rdfs:seeAlso values that point to DP resources are ignored, since the tools rewrite them on every run.
+ */
+public class OntologyDiff {
+	public static final String ADDED = "added", REMOVED = "removed", CHANGED = "changed";
+	private static final String LABEL = "annotation http://www.w3.org/2000/01/rdf-schema#label ";
+	private static final String MAPPING = "annotation http://www.w3.org/2000/01/rdf-schema#seeAlso "+ConvertOntologyURIs.BASE_URL_PREFIX;
+	private List<Change> changes = new ArrayList<Change>();
+	private int oldCount, newCount;
+
+	/**
+	 * change of a single resource
+	 */
+	public static class Change {
+		private String type, uri, name, label;
+		private List<String> added = new ArrayList<String>(), removed = new ArrayList<String>();
+
+		Change(String type, Entry e){
+			this.type = type;
+			this.uri = e.uri;
+			this.name = e.name;
+			this.label = e.getLabel();
+		}
+
+		/**
+		 * added, removed or changed
+		 * @return
+		 */
+		public String getType() {
+			return type;
+		}
+
+		public String getURI() {
+			return uri;
+		}
+
+		/**
+		 * resource name (DP ID in generated models)
+		 * @return
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		/**
+		 * canonical lines that a changed resource gained
+		 * @return
+		 */
+		public List<String> getAddedLines() {
+			return added;
+		}
+
+		/**
+		 * canonical lines that a changed resource lost
+		 * @return
+		 */
+		public List<String> getRemovedLines() {
+			return removed;
+		}
+
+		public String toString(){
+			String s = (ADDED.equals(type)?"+ ":REMOVED.equals(type)?"- ":"~ ")+name;
+			return (label != null && !label.equals(name))?s+" ("+label+")":s;
+		}
+	}
+
+	/**
+	 * canonical form of a resource in one version
+	 */
+	private static class Entry {
+		String uri, name;
+		List<String> lines;
+		long hash;
+
+		Entry(String uri, String name, List<String> lines){
+			this.uri = uri;
+			this.name = name;
+			this.lines = lines;
+			this.hash = ContentHash.hash(lines);
+		}
+
+		String getLabel(){
+			for(String l: lines){
+				if(l.startsWith(LABEL))
+					return l.substring(LABEL.length());
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * diff two loaded versions of an ontology
+	 * @param oldVersion
+	 * @param newVersion
+	 */
+	public OntologyDiff(IOntology oldVersion, IOntology newVersion){
+		compare(getEntries(oldVersion),getEntries(newVersion));
+	}
+
+	/**
+	 * diff snapshots of two versions of an ontology
+	 * @param oldVersion
+	 * @param newVersion
+	 */
+	public OntologyDiff(OntologySnapshot oldVersion, OntologySnapshot newVersion){
+		compare(getEntries(oldVersion),getEntries(newVersion));
+	}
+
+	private static Map<String,Entry> getEntries(IOntology ont){
+		Map<String,Entry> entries = new LinkedHashMap<String, Entry>();
+		IResourceIterator [] iterators = new IResourceIterator [] {ont.getAllClasses(),ont.getAllProperties(),ont.getAllInstances()};
+		for(IResourceIterator it: iterators){
+			while(it.hasNext()){
+				IResource r = it.next();
+				if(r == null || entries.containsKey(""+r.getURI()))
+					continue;
+				entries.put(""+r.getURI(),new Entry(""+r.getURI(),r.getName(),ContentHash.getCanonicalForm(r)));
+			}
+		}
+		return entries;
+	}
+
+	private static Map<String,Entry> getEntries(OntologySnapshot snapshot){
+		Map<String,Entry> entries = new LinkedHashMap<String, Entry>();
+		for(OntologySnapshot.Resource r: snapshot.getResources()){
+			// same lines as ContentHash.getCanonicalForm(r), without mappings and derived sub-classes
+			List<String> lines = new ArrayList<String>();
+			lines.add("resource "+r.getURI());
+			for(String l: r.getContent()){
+				if(!l.startsWith("sub ") && !l.startsWith(MAPPING))
+					lines.add(l);
+			}
+			Collections.sort(lines);
+			entries.put(r.getURI(),new Entry(r.getURI(),r.getName(),lines));
+		}
+		return entries;
+	}
+
+	/**
+	 * compare versions by URI and hash
+	 */
+	private void compare(Map<String,Entry> oldEntries, Map<String,Entry> newEntries){
+		oldCount = oldEntries.size();
+		newCount = newEntries.size();
+		for(Entry e: newEntries.values()){
+			Entry o = oldEntries.get(e.uri);
+			if(o == null){
+				changes.add(new Change(ADDED,e));
+			}else if(o.hash != e.hash){
+				Change c = new Change(CHANGED,e);
+				Set<String> before = new HashSet<String>(o.lines), after = new HashSet<String>(e.lines);
+				for(String l: e.lines){
+					if(!before.contains(l))
+						c.added.add(l);
+				}
+				for(String l: o.lines){
+					if(!after.contains(l))
+						c.removed.add(l);
+				}
+				changes.add(c);
+			}
+		}
+		for(Entry o: oldEntries.values()){
+			if(!newEntries.containsKey(o.uri))
+				changes.add(new Change(REMOVED,o));
+		}
+	}
+
+	/**
+	 * all changes: added and changed resources in order of new version, then removed resources
+	 * @return
+	 */
+	public List<Change> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * changes of a given type
+	 * @param type - added, removed or changed
+	 * @return
+	 */
+	public List<Change> getChanges(String type){
+		List<Change> list = new ArrayList<Change>();
+		for(Change c: changes){
+			if(c.type.equals(type))
+				list.add(c);
+		}
+		return list;
+	}
+
+	public boolean isEmpty(){
+		return changes.isEmpty();
+	}
+
+	/**
+	 * write report sorted by resource name, with changed lines of changed resources
+	 * @param w
+	 */
+	public void write(Writer w){
+		PrintWriter out = new PrintWriter(w);
+		Map<String,Change> sorted = new TreeMap<String, Change>();
+		for(Change c: changes)
+			sorted.put(c.name+" "+c.uri,c);
+		for(Change c: sorted.values()){
+			out.println(c);
+			for(String l: c.removed)
+				out.println("    - "+l);
+			for(String l: c.added)
+				out.println("    + "+l);
+		}
+		out.println(getChanges(ADDED).size()+" added, "+getChanges(REMOVED).size()+" removed, "+
+				getChanges(CHANGED).size()+" changed of "+oldCount+" -> "+newCount+" resources");
+		out.flush();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 2){
+			System.err.println("Usage: java "+OntologyDiff.class.getName()+" [-cache <snapshot directory>] <old ontology> <new ontology>");
+			System.err.println("Ex: java "+OntologyDiff.class.getName()+" release/cancer.owl cancer_models/cancer.owl");
+			return;
+		}
+		long time = System.currentTimeMillis();
+		OntologyDiff diff;
+		if("-cache".equals(args[0]) && args.length > 3){
+			File cache = new File(args[1]);
+			diff = new OntologyDiff(OntologySnapshot.load(new File(args[2]),cache),OntologySnapshot.load(new File(args[3]),cache));
+		}else{
+			diff = new OntologyDiff(OOntology.loadOntology(new File(args[0])),OOntology.loadOntology(new File(args[1])));
+		}
+		diff.write(new PrintWriter(System.out));
+		System.out.println("compared in "+(System.currentTimeMillis()-time)+" ms");
+	}
+}
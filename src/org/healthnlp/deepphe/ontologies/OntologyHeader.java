@@ -0,0 +1,92 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * ontology IRI and imports read from the header of OWL/XML or RDF/XML file
+ * without loading the ontology, scanning stops at the first entity
+ */
+public class OntologyHeader {
+	private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+	private static final Set<String> HEADER_ELEMENTS = new HashSet<String>(Arrays.asList("Ontology","Prefix","Import","Annotation"));
+	private String ontologyIRI;
+	private List<String> imports;
+
+	/**
+	 * read header of ontology file
+	 * @param file
+	 * @throws IOException
+	 */
+	public OntologyHeader(File file) throws IOException{
+		imports = new ArrayList<String>();
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try{
+			XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+			int depth = 0;
+			while(reader.hasNext()){
+				int event = reader.next();
+				if(event == XMLStreamConstants.START_ELEMENT){
+					depth ++;
+					String name = reader.getLocalName();
+					if(depth == 1){
+						// OWL/XML root
+						if(reader.getAttributeValue(null,"ontologyIRI") != null)
+							ontologyIRI = reader.getAttributeValue(null,"ontologyIRI");
+					}else if(depth == 2 && !HEADER_ELEMENTS.contains(name)){
+						break;
+					}else if(depth == 2 && "Ontology".equals(name)){
+						// RDF/XML owl:Ontology
+						ontologyIRI = reader.getAttributeValue(RDF_NS,"about");
+					}else if("imports".equals(name) && reader.getAttributeValue(RDF_NS,"resource") != null){
+						imports.add(reader.getAttributeValue(RDF_NS,"resource"));
+					}else if("Import".equals(name)){
+						imports.add(reader.getElementText().trim());
+						depth --;
+					}
+				}else if(event == XMLStreamConstants.END_ELEMENT){
+					depth --;
+				}
+			}
+			reader.close();
+		}catch(XMLStreamException e){
+			throw new IOException("Unable to read ontology header of "+file,e);
+		}finally{
+			in.close();
+		}
+	}
+
+	public String getOntologyIRI() {
+		return ontologyIRI;
+	}
+
+	public List<String> getImports() {
+		return imports;
+	}
+
+	/**
+	 * file name that an ontology IRI is expected to have
+	 * @param iri
+	 * @return
+	 */
+	public static String getFileName(String iri){
+		String name = iri.replaceAll("#.*$","");
+		name = name.substring(name.lastIndexOf('/')+1);
+		if(!name.endsWith(".owl"))
+			name = name+".owl";
+		return name;
+	}
+}
@@ -0,0 +1,82 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+
+import org.semanticweb.owlapi.io.OWLXMLOntologyFormat;
+import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyAlreadyExistsException;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.util.AutoIRIMapper;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntologyException;
+import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
+
+/**
+ * resolve imports of a newly created ontology in memory.
+ * IOntology.addImportedOntology() only adds an import declaration, the imported
+ * ontology lives in a different OWLOntologyManager, so its model is not visible
+ * until the target is saved and parsed again. Loading the imported file into the
+ * manager of the target makes it part of the imports closure right away.
+ */
+public class OntologyImports {
+
+	/**
+	 * add import of ontology file to a target ontology, imported ontology is loaded
+	 * into the same manager as the target
+	 * @param target
+	 * @param importFile
+	 * @return imported ontology
+	 * @throws IOntologyException
+	 */
+	public static OWLOntology addImport(OOntology target, File importFile) throws IOntologyException{
+		OWLOntologyManager manager = target.getOWLOntologyManager();
+		manager.addIRIMapper(new AutoIRIMapper(importFile.getAbsoluteFile().getParentFile(),false));
+
+		OWLOntology imported = null;
+		try {
+			imported = manager.loadOntologyFromOntologyDocument(importFile);
+		} catch (OWLOntologyAlreadyExistsException e) {
+			imported = manager.getOntology(e.getOntologyID());
+		} catch (OWLOntologyCreationException e) {
+			throw new IOntologyException("Unable to load imported ontology "+importFile,e);
+		}
+
+		IRI iri = imported.getOntologyID().getOntologyIRI();
+		manager.applyChange(new AddImport(target.getOWLOntology(),manager.getOWLDataFactory().getOWLImportsDeclaration(iri)));
+		return imported;
+	}
+
+	/**
+	 * add import of a shared ontology to a target ontology, imported ontology is created
+	 * in the manager of the target from shared axioms instead of being parsed again
+	 * @param target
+	 * @param shared
+	 * @return imported ontology
+	 * @throws IOntologyException
+	 */
+	public static OWLOntology addImport(OOntology target, SharedOntology shared) throws IOntologyException{
+		OWLOntologyManager manager = target.getOWLOntologyManager();
+		OWLOntology imported = shared.addTo(manager);
+		manager.applyChange(new AddImport(target.getOWLOntology(),manager.getOWLDataFactory().getOWLImportsDeclaration(shared.getIRI())));
+		return imported;
+	}
+
+	/**
+	 * set location of ontology that was created in memory, so that
+	 * IOntology.save() writes it to a given file in OWL format
+	 * @param target
+	 * @param file
+	 */
+	public static void setLocation(OOntology target, File file){
+		OWLOntologyManager manager = target.getOWLOntologyManager();
+		OWLOntology ont = target.getOWLOntology();
+
+		OWLXMLOntologyFormat format = new OWLXMLOntologyFormat();
+		format.setDefaultPrefix(ont.getOntologyID().getOntologyIRI()+"#");
+		manager.setOntologyFormat(ont,format);
+		manager.setOntologyDocumentIRI(ont,IRI.create(file.getAbsoluteFile()));
+	}
+}
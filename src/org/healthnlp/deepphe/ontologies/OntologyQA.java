@@ -0,0 +1,462 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.IOntologyException;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+import edu.pitt.dbmi.nlp.noble.ontology.IResourceIterator;
+import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
+
+/**
+ * quality report of ontology terms, in the format of deepphe/ontQA.txt.
+ * Labels and synonyms of every class are tokenized, stop words are dropped and words are stemmed,
+ * then an inverted index of normalized terms to classes gives polysemous terms (same term, several classes).
+ * The report also lists word frequency statistics and terms picked by the same rules as the existing report:
+ * <ul>
+ * <li>likely abbreviations - terms with letters that have a digit, a comma, a bracket, a plus or a " - " separator,
+ * terms in capitals of at most 5 letters or digits, and mixed case terms with a capital after the first letter
+ * <li>laterality - terms that contain left or right anywhere, except terms of the Left and Right classes
+ * <li>single word synonyms - terms without whitespace of a class whose preferred term has whitespace
+ * <li>multiple preferred terms - classes with more than one label
+ * </ul>
+ * Ontologies are loaded and their terms are tokenized on a thread pool, each task into its own index,
+ * indexes are merged in the end.
+ */
+public class OntologyQA {
+	public static final String SYNONYM = "http://blulab.chpc.utah.edu/ontologies/TermMapping.owl#synonym";
+	public static final double FREQUENT_CUTOFF = 0.002, TOP_CUTOFF = 0.1;
+	private static final Set<String> STOP_WORDS = new HashSet<String>(Arrays.asList(
+			"a","an","and","as","at","by","for","from","in","into","of","on","or","the","to","with","without"));
+	private static final String [] LATERALITY = new String [] {"left","right"};
+	private static final String ABBREVIATION_MARKS = "([,+";
+	private Map<String,Concept> concepts = new HashMap<String, Concept>();
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	// results of analysis
+	private Map<String,Set<String>> termIndex;
+	private Map<String,Integer> wordCounts;
+	private int termCount;
+
+	/**
+	 * terms of a single class
+	 */
+	private static class Concept {
+		String name, uri;
+		List<String> labels = new ArrayList<String>();
+		Set<String> synonyms = new LinkedHashSet<String>();
+
+		String getPreferredTerm(){
+			return labels.isEmpty()?name.replace('_',' '):labels.get(0);
+		}
+
+		Set<String> getTerms(){
+			Set<String> terms = new LinkedHashSet<String>(labels);
+			terms.addAll(synonyms);
+			if(terms.isEmpty())
+				terms.add(name.replace('_',' '));
+			return terms;
+		}
+	}
+
+	/**
+	 * results of tokenizing a part of concepts
+	 */
+	private static class Index {
+		Map<String,Set<String>> terms = new HashMap<String, Set<String>>();
+		Map<String,Integer> words = new HashMap<String, Integer>();
+		int termCount;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * add classes of an ontology (and its imports), a class that was already added through another ontology is skipped
+	 * @param ont
+	 */
+	public void add(IOntology ont){
+		IProperty synonym = ont.getProperty(SYNONYM);
+		IResourceIterator it = ont.getAllClasses();
+		while(it.hasNext()){
+			IClass cls = (IClass) it.next();
+			if(cls == null)
+				continue;
+			String uri = ""+cls.getURI();
+			Concept c = new Concept();
+			c.name = cls.getName();
+			c.uri = uri;
+			c.labels.addAll(Arrays.asList(cls.getLabels()));
+			if(synonym != null){
+				for(Object o: cls.getPropertyValues(synonym))
+					c.synonyms.add(o.toString());
+			}
+			synchronized(concepts){
+				if(!concepts.containsKey(uri))
+					concepts.put(uri,c);
+			}
+		}
+	}
+
+	/**
+	 * load ontology files in parallel and add their classes
+	 * @param files
+	 * @throws IOntologyException
+	 */
+	public void load(List<File> files) throws IOntologyException{
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(final File f: files){
+			tasks.add(new Callable<Void>() {
+				public Void call() throws Exception {
+					add(OOntology.loadOntology(f));
+					return null;
+				}
+			});
+		}
+		try{
+			invokeAll(tasks);
+		}catch(Exception e){
+			throw new IOntologyException("Unable to load ontologies",e);
+		}
+	}
+
+	/**
+	 * tokenize terms of all classes in parallel and build term index and word counts
+	 */
+	public void analyze(){
+		List<Concept> list = new ArrayList<Concept>(concepts.values());
+		int chunk = Math.max(1,(list.size()+threads-1)/Math.max(1,threads));
+		List<Callable<Index>> tasks = new ArrayList<Callable<Index>>();
+		for(int i=0;i<list.size();i+=chunk){
+			final List<Concept> part = list.subList(i,Math.min(list.size(),i+chunk));
+			tasks.add(new Callable<Index>() {
+				public Index call() throws Exception {
+					return index(part);
+				}
+			});
+		}
+		termIndex = new HashMap<String, Set<String>>();
+		wordCounts = new HashMap<String, Integer>();
+		termCount = 0;
+		try{
+			for(Index index: invokeAll(tasks)){
+				for(String t: index.terms.keySet()){
+					Set<String> set = termIndex.get(t);
+					if(set == null){
+						set = new TreeSet<String>();
+						termIndex.put(t,set);
+					}
+					set.addAll(index.terms.get(t));
+				}
+				for(String w: index.words.keySet()){
+					Integer n = wordCounts.get(w);
+					wordCounts.put(w,(n == null)?index.words.get(w):n+index.words.get(w));
+				}
+				termCount += index.termCount;
+			}
+		}catch(Exception e){
+			throw new IllegalStateException("Unable to analyze terms",e);
+		}
+	}
+
+	private <T> List<T> invokeAll(List<Callable<T>> tasks) throws InterruptedException, ExecutionException{
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,Math.min(threads,tasks.size())));
+		try{
+			List<T> results = new ArrayList<T>();
+			for(Future<T> f: pool.invokeAll(tasks))
+				results.add(f.get());
+			return results;
+		}finally{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * tokenize terms of some concepts
+	 * @param part
+	 * @return
+	 */
+	private static Index index(List<Concept> part){
+		Index index = new Index();
+		Stemmer stemmer = new Stemmer();
+		for(Concept c: part){
+			for(String term: c.getTerms()){
+				List<String> words = normalize(term,stemmer);
+				for(String w: words){
+					Integer n = index.words.get(w);
+					index.words.put(w,(n == null)?1:n+1);
+				}
+				String key = join(words);
+				Set<String> set = index.terms.get(key);
+				if(set == null){
+					set = new HashSet<String>();
+					index.terms.put(key,set);
+				}
+				set.add(c.name);
+				index.termCount ++;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * split term into lowercase words, drop stop words and stem the rest
+	 * @param term
+	 * @param stemmer
+	 * @return
+	 */
+	public static List<String> normalize(String term, Stemmer stemmer){
+		List<String> words = new ArrayList<String>();
+		for(String w: tokenize(term)){
+			w = w.toLowerCase(Locale.ROOT);
+			if(!STOP_WORDS.contains(w))
+				words.add(stemmer.stem(w));
+		}
+		return words;
+	}
+
+	private static List<String> tokenize(String term){
+		List<String> words = new ArrayList<String>();
+		int start = -1;
+		for(int i=0;i<=term.length();i++){
+			boolean letter = i < term.length() && Character.isLetterOrDigit(term.charAt(i));
+			if(letter && start < 0){
+				start = i;
+			}else if(!letter && start >= 0){
+				words.add(term.substring(start,i));
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	private static String join(List<String> words){
+		StringBuilder b = new StringBuilder();
+		for(String w: words){
+			if(b.length() > 0)
+				b.append(' ');
+			b.append(w);
+		}
+		return b.toString();
+	}
+
+	/**
+	 * write report
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException{
+		if(termIndex == null)
+			analyze();
+		Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),"UTF-8"));
+		try{
+			write(w);
+		}finally{
+			w.close();
+		}
+	}
+
+	/**
+	 * write report
+	 * @param w
+	 * @throws IOException
+	 */
+	public void write(Writer w) throws IOException{
+		// word frequencies
+		int frequent = (int) Math.round(FREQUENT_CUTOFF*termCount);
+		int max = wordCounts.isEmpty()?0:Collections.max(wordCounts.values());
+		int frequentWords = 0, topWords = 0, superTopWords = 0;
+		for(int n: wordCounts.values()){
+			if(n > frequent)
+				frequentWords ++;
+			if(n >= TOP_CUTOFF*max)
+				topWords ++;
+			if(n >= TOP_CUTOFF*termCount)
+				superTopWords ++;
+		}
+		w.write("total words: "+wordCounts.size()+", frequent words (> "+frequent+"): "+frequentWords+", cutoff: "+FREQUENT_CUTOFF+"\n");
+		w.write("top words: "+topWords+", super top words: "+superTopWords+", cutoff: "+TOP_CUTOFF+"\n");
+
+		w.write("#POLYSEMOUS TERMS\n");
+		for(String term: new TreeSet<String>(termIndex.keySet())){
+			Set<String> classes = termIndex.get(term);
+			if(classes.size() > 1)
+				w.write(term+"\t"+classes+"\n");
+		}
+
+		List<Concept> list = getConcepts();
+		w.write("#LIKELY ABBREVIATIONS TERMS\n");
+		for(Concept c: list){
+			for(String term: c.getTerms()){
+				if(isAbbreviation(term))
+					w.write(term+"\t"+c.name+"\n");
+			}
+		}
+
+		w.write("#LATERALITY TERMS\n");
+		for(Concept c: list){
+			// terms of laterality values themselves are not listed
+			if(isLateralityValue(c.name))
+				continue;
+			for(String term: c.getTerms()){
+				if(isLaterality(term))
+					w.write(term+"\t"+c.name+"\n");
+			}
+		}
+
+		w.write("#SINGLE WORD SYNONYMS FOR MULTI-WORD CONCEPTS\n");
+		for(Concept c: list){
+			String preferred = c.getPreferredTerm();
+			if(!hasWhitespace(preferred))
+				continue;
+			for(String term: c.getTerms()){
+				if(!hasWhitespace(term))
+					w.write(term+"\t"+c.uri+"\t"+preferred+"\n");
+			}
+		}
+
+		w.write("#MULTIPLE PREFERRED TERMS FOR CLASS\n");
+		for(Concept c: list){
+			if(c.labels.size() > 1)
+				w.write(c.name+"\t"+c.uri+"\t"+c.labels+"\n");
+		}
+	}
+
+	/**
+	 * concepts sorted by URI, so the report does not depend on load order
+	 * @return
+	 */
+	private List<Concept> getConcepts(){
+		List<Concept> list = new ArrayList<Concept>();
+		for(String uri: new TreeMap<String,Concept>(concepts).keySet())
+			list.add(concepts.get(uri));
+		return list;
+	}
+
+	/**
+	 * term that has an abbreviation or a code in it, s.a. SCLC, Pilonidal cyst NOS, Sinus, Pilonidal or WT1
+	 * @param term
+	 * @return
+	 */
+	private static boolean isAbbreviation(String term){
+		boolean letters = false, lowercase = false, marks = false, alphanumeric = true;
+		for(int i=0;i<term.length();i++){
+			char c = term.charAt(i);
+			letters |= Character.isLetter(c);
+			lowercase |= Character.isLowerCase(c);
+			marks |= Character.isDigit(c) || ABBREVIATION_MARKS.indexOf(c) > -1;
+			alphanumeric &= Character.isLetterOrDigit(c);
+		}
+		if(!letters)
+			return false;
+		if(marks || term.contains(" - "))
+			return true;
+		// all capitals, only short words are abbreviations
+		if(!lowercase)
+			return alphanumeric && term.length() <= 5;
+		// capital after first letter s.a. Left Renal Artery or bHLHe33
+		for(int i=1;i<term.length();i++){
+			if(Character.isUpperCase(term.charAt(i)))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * term that mentions left or right anywhere, s.a. Renal artery.left
+	 * @param term
+	 * @return
+	 */
+	private static boolean isLaterality(String term){
+		String t = term.toLowerCase(Locale.ROOT);
+		for(String w: LATERALITY){
+			if(t.contains(w))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean isLateralityValue(String name){
+		for(String w: LATERALITY){
+			if(w.equalsIgnoreCase(name))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean hasWhitespace(String term){
+		for(int i=0;i<term.length();i++){
+			if(Character.isWhitespace(term.charAt(i)))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * ontology files in a directory
+	 * @param dir
+	 * @return
+	 */
+	private static List<File> getOntologyFiles(File dir){
+		List<File> files = new ArrayList<File>();
+		File [] list = dir.listFiles();
+		if(list != null){
+			Arrays.sort(list);
+			for(File f: list){
+				if(f.getName().endsWith(".owl"))
+					files.add(f);
+			}
+		}
+		return files;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length == 0){
+			System.err.println("Usage: java "+OntologyQA.class.getName()+" <output> [ontology files or directories]");
+			System.err.println("by default deepphe/*.owl and cancer_models/*.owl are analyzed");
+			return;
+		}
+		List<File> files = new ArrayList<File>();
+		for(int i=1;i<args.length;i++){
+			File f = new File(args[i]);
+			if(f.isDirectory())
+				files.addAll(getOntologyFiles(f));
+			else
+				files.add(f);
+		}
+		if(files.isEmpty()){
+			files.addAll(getOntologyFiles(new File("deepphe")));
+			files.addAll(getOntologyFiles(new File("cancer_models")));
+		}
+		long time = System.currentTimeMillis();
+		OntologyQA qa = new OntologyQA();
+		qa.load(files);
+		qa.analyze();
+		qa.write(new File(args[0]));
+		System.out.println("analyzed "+qa.concepts.size()+" classes in "+(System.currentTimeMillis()-time)+" ms");
+	}
+}
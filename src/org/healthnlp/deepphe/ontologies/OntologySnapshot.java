@@ -0,0 +1,539 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.IInstance;
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.IOntologyException;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+import edu.pitt.dbmi.nlp.noble.ontology.IResourceIterator;
+import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
+
+/**
+ * read only snapshot of a parsed ontology (with its imports) kept in a cache directory.
+ * A snapshot is written the first time an ontology file is loaded and is keyed by the hash of that file
+ * and the local files it imports, later loads of unchanged files memory map the snapshot instead of parsing OWL.
+ * Every resource is stored as its canonical content (see ContentHash): labels and other annotations,
+ * super, sub, equivalent and disjoint classes, restrictions, and domain, range and type of properties.
+ * <pre>
+ * magic "DPSNAP01"
+ * string source hash, string ontology URI
+ * int resource count
+ * int [count + 1] record offsets          - resources sorted by URI
+ * int [count] resource numbers            - sorted by name
+ * records                                 - UTF-8 lines: uri, name, kind, content
+ * </pre>
+ * A snapshot can be shared between threads.
+ */
+public class OntologySnapshot {
+	public static final String MAGIC = "DPSNAP01";
+	public static final String SUFFIX = ".snapshot";
+	public static final String CLASS = "class", PROPERTY = "property", INSTANCE = "instance";
+	private static final String LABEL = "annotation http://www.w3.org/2000/01/rdf-schema#label ";
+	private final ByteBuffer buffer;
+	private final String sourceHash, uri;
+	private final int count, offsets, names, records;
+
+	/**
+	 * resource of a snapshot, its content is decoded when it is first asked for
+	 */
+	public class Resource {
+		private int number;
+		private String [] lines;
+
+		Resource(int number){
+			this.number = number;
+		}
+
+		private String [] getLines(){
+			if(lines == null)
+				lines = getRecord(number).split("\n",-1);
+			return lines;
+		}
+
+		public String getURI(){
+			return getLines()[0];
+		}
+
+		public String getName(){
+			return getLines()[1];
+		}
+
+		/**
+		 * kind of resource: class, property or instance
+		 * @return
+		 */
+		public String getKind(){
+			return getLines()[2];
+		}
+
+		public boolean isClass(){
+			return CLASS.equals(getKind());
+		}
+
+		public boolean isProperty(){
+			return PROPERTY.equals(getKind());
+		}
+
+		/**
+		 * canonical content lines of resource (see ContentHash.getCanonicalForm())
+		 * @return
+		 */
+		public List<String> getContent(){
+			String [] l = getLines();
+			return Collections.unmodifiableList(Arrays.asList(l).subList(3,l.length));
+		}
+
+		/**
+		 * values of content lines with a given prefix
+		 * @param prefix
+		 * @return
+		 */
+		public List<String> getValues(String prefix){
+			List<String> values = new ArrayList<String>();
+			String [] l = getLines();
+			for(int i=3;i<l.length;i++){
+				if(l[i].startsWith(prefix))
+					values.add(l[i].substring(prefix.length()));
+			}
+			return values;
+		}
+
+		public List<String> getLabels(){
+			return getValues(LABEL);
+		}
+
+		/**
+		 * values of an annotation property
+		 * @param property - property URI
+		 * @return
+		 */
+		public List<String> getAnnotations(String property){
+			return getValues("annotation "+property+" ");
+		}
+
+		/**
+		 * URIs of direct super classes (or super properties)
+		 * @return
+		 */
+		public List<String> getSuperClasses(){
+			return getValues("super ");
+		}
+
+		/**
+		 * URIs of direct sub classes (or sub properties)
+		 * @return
+		 */
+		public List<String> getSubClasses(){
+			return getValues("sub ");
+		}
+
+		public List<String> getEquivalentClasses(){
+			List<String> values = getValues("equivalent ");
+			for(Iterator<String> it = values.iterator(); it.hasNext();){
+				if(it.next().startsWith("restriction "))
+					it.remove();
+			}
+			return values;
+		}
+
+		public List<String> getDisjointClasses(){
+			return getValues("disjoint ");
+		}
+
+		public List<String> getEquivalentRestrictions(){
+			return getValues("equivalent restriction ");
+		}
+
+		public List<String> getNecessaryRestrictions(){
+			return getValues("necessary restriction ");
+		}
+
+		public String toString(){
+			return getURI();
+		}
+	}
+
+	/**
+	 * memory map a snapshot file
+	 * @param file
+	 * @throws IOException
+	 */
+	public OntologySnapshot(File file) throws IOException{
+		RandomAccessFile raf = new RandomAccessFile(file,"r");
+		try{
+			FileChannel channel = raf.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+		}finally{
+			raf.close();
+		}
+		if(!MAGIC.equals(getString(0,MAGIC.length())))
+			throw new IOException("Not an ontology snapshot: "+file);
+		int p = MAGIC.length();
+		int n = buffer.getInt(p);
+		sourceHash = getString(p+4,n);
+		p += 4+n;
+		n = buffer.getInt(p);
+		uri = getString(p+4,n);
+		p += 4+n;
+		count = buffer.getInt(p);
+		offsets = p+4;
+		names = offsets+4*(count+1);
+		records = names+4*count;
+	}
+
+	/**
+	 * load snapshot of an ontology file from cache directory,
+	 * ontology is parsed and its snapshot is written if the file (or its imports) changed since the last snapshot
+	 * @param source - ontology file
+	 * @param cacheDir - directory of snapshots
+	 * @return
+	 * @throws IOException
+	 * @throws IOntologyException
+	 */
+	public static OntologySnapshot load(File source, File cacheDir) throws IOException, IOntologyException{
+		String hash = hash(source);
+		File file = getFile(source,cacheDir,hash);
+		if(!file.exists()){
+			if(!cacheDir.exists() && !cacheDir.mkdirs())
+				throw new IOException("Unable to create "+cacheDir);
+			// write to a temporary file first, so that other processes never map a partial snapshot
+			File tmp = File.createTempFile(file.getName(),".tmp",cacheDir);
+			try{
+				write(OOntology.loadOntology(source),hash,tmp);
+				removeSnapshots(source,cacheDir);
+				if(!tmp.renameTo(file) && !file.exists())
+					throw new IOException("Unable to write "+file);
+			}finally{
+				tmp.delete();
+			}
+		}
+		return new OntologySnapshot(file);
+	}
+
+	/**
+	 * is there a current snapshot of an ontology file in cache directory
+	 * @param source
+	 * @param cacheDir
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean isCached(File source, File cacheDir) throws IOException{
+		return getFile(source,cacheDir,hash(source)).exists();
+	}
+
+	private static File getFile(File source, File cacheDir, String hash) throws IOException{
+		return new File(cacheDir,getPrefix(source)+hash+SUFFIX);
+	}
+
+	/**
+	 * snapshot file name prefix of a source file, hash of its canonical path keeps
+	 * snapshots of files with the same name in different directories apart
+	 */
+	private static String getPrefix(File source) throws IOException{
+		String path = source.getCanonicalPath();
+		return source.getName().replaceAll("\\.owl$","")+"-"+String.format("%08x",path.hashCode())+"-";
+	}
+
+	/**
+	 * remove outdated snapshots of a source file
+	 */
+	private static void removeSnapshots(File source, File cacheDir) throws IOException{
+		File [] list = cacheDir.listFiles();
+		if(list == null)
+			return;
+		String prefix = getPrefix(source);
+		for(File f: list){
+			if(f.getName().startsWith(prefix) && f.getName().endsWith(SUFFIX))
+				f.delete();
+		}
+	}
+
+	/**
+	 * SHA-1 of an ontology file and the files it imports from the same directory
+	 * @param source
+	 * @return hex string
+	 * @throws IOException
+	 */
+	public static String hash(File source) throws IOException{
+		MessageDigest digest;
+		try{
+			digest = MessageDigest.getInstance("SHA-1");
+		}catch(NoSuchAlgorithmException e){
+			throw new IOException(e);
+		}
+		Set<File> done = new LinkedHashSet<File>();
+		Deque<File> queue = new ArrayDeque<File>();
+		queue.add(source.getCanonicalFile());
+		byte [] b = new byte [64*1024];
+		while(!queue.isEmpty()){
+			File f = queue.poll();
+			if(!done.add(f))
+				continue;
+			InputStream in = new BufferedInputStream(new FileInputStream(f));
+			try{
+				for(int n = in.read(b); n > -1; n = in.read(b))
+					digest.update(b,0,n);
+			}finally{
+				in.close();
+			}
+			for(String iri: new OntologyHeader(f).getImports()){
+				File i = new File(f.getParentFile(),OntologyHeader.getFileName(iri));
+				if(i.exists())
+					queue.add(i.getCanonicalFile());
+			}
+		}
+		StringBuilder s = new StringBuilder();
+		for(byte x: digest.digest())
+			s.append(String.format("%02x",x & 0xff));
+		return s.toString();
+	}
+
+	/**
+	 * write snapshot of a loaded ontology
+	 * @param ont - ontology
+	 * @param sourceHash - hash of ontology source
+	 * @param file - snapshot file
+	 * @throws IOException
+	 */
+	public static void write(IOntology ont, String sourceHash, File file) throws IOException{
+		// canonical content of all resources by URI
+		Map<String,List<String>> content = new HashMap<String, List<String>>();
+		final Map<String,String> resourceNames = new HashMap<String, String>();
+		Map<String,Set<String>> subs = new HashMap<String, Set<String>>();
+		IResourceIterator [] iterators = new IResourceIterator [] {ont.getAllClasses(),ont.getAllProperties(),ont.getAllInstances()};
+		for(IResourceIterator it: iterators){
+			while(it.hasNext()){
+				IResource r = it.next();
+				if(r == null || content.containsKey(""+r.getURI()))
+					continue;
+				String u = ""+r.getURI();
+				List<String> lines = new ArrayList<String>();
+				lines.add(u);
+				lines.add(r.getName());
+				lines.add((r instanceof IClass)?CLASS:(r instanceof IProperty)?PROPERTY:(r instanceof IInstance)?INSTANCE:"");
+				for(String l: ContentHash.getCanonicalForm(r,true)){
+					if(l.startsWith("resource "))
+						continue;
+					lines.add(l.replace('\n',' '));
+					if(l.startsWith("super ")){
+						Set<String> s = subs.get(l.substring(6));
+						if(s == null){
+							s = new TreeSet<String>();
+							subs.put(l.substring(6),s);
+						}
+						s.add(u);
+					}
+				}
+				content.put(u,lines);
+				resourceNames.put(u,r.getName());
+			}
+		}
+		for(String s: subs.keySet()){
+			List<String> lines = content.get(s);
+			if(lines == null)
+				continue;
+			for(String u: subs.get(s))
+				lines.add("sub "+u);
+		}
+
+		List<String> uris = new ArrayList<String>(content.keySet());
+		Collections.sort(uris);
+		List<String> byName = new ArrayList<String>(uris);
+		Collections.sort(byName,new Comparator<String>() {
+			public int compare(String a, String b) {
+				int c = resourceNames.get(a).compareTo(resourceNames.get(b));
+				return (c != 0)?c:a.compareTo(b);
+			}
+		});
+		Map<String,Integer> numbers = new HashMap<String, Integer>();
+		List<byte []> data = new ArrayList<byte[]>();
+		for(String u: uris){
+			numbers.put(u,data.size());
+			StringBuilder b = new StringBuilder();
+			for(String l: content.get(u)){
+				if(b.length() > 0)
+					b.append('\n');
+				b.append(l);
+			}
+			data.add(b.toString().getBytes(TermDictionary.UTF8));
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try{
+			out.write(MAGIC.getBytes(TermDictionary.UTF8));
+			writeString(out,sourceHash);
+			writeString(out,""+ont.getURI());
+			out.writeInt(data.size());
+			int offset = 0;
+			for(byte [] d: data){
+				out.writeInt(offset);
+				offset += d.length;
+			}
+			out.writeInt(offset);
+			for(String u: byName)
+				out.writeInt(numbers.get(u));
+			for(byte [] d: data)
+				out.write(d);
+		}finally{
+			out.close();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException{
+		byte [] b = s.getBytes(TermDictionary.UTF8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	/**
+	 * hash of ontology source that snapshot was made from
+	 * @return
+	 */
+	public String getSourceHash() {
+		return sourceHash;
+	}
+
+	/**
+	 * ontology URI
+	 * @return
+	 */
+	public String getURI() {
+		return uri;
+	}
+
+	public int getResourceCount(){
+		return count;
+	}
+
+	/**
+	 * all resources sorted by URI
+	 * @return
+	 */
+	public List<Resource> getResources(){
+		return new AbstractList<Resource>() {
+			public Resource get(int index) {
+				return new Resource(index);
+			}
+			public int size() {
+				return count;
+			}
+		};
+	}
+
+	/**
+	 * get resource by URI
+	 * @param uri
+	 * @return null if there is no such resource
+	 */
+	public Resource getResource(String uri){
+		int lo = 0, hi = count-1;
+		while(lo <= hi){
+			int mid = (lo+hi) >>> 1;
+			int c = getLine(mid,0).compareTo(uri);
+			if(c == 0)
+				return new Resource(mid);
+			if(c < 0)
+				lo = mid+1;
+			else
+				hi = mid-1;
+		}
+		return null;
+	}
+
+	/**
+	 * get resources by name, several imported ontologies may have a resource with the same name
+	 * @param name
+	 * @return
+	 */
+	public List<Resource> getResourcesByName(String name){
+		int lo = 0, hi = count;
+		while(lo < hi){
+			int mid = (lo+hi) >>> 1;
+			if(getLine(buffer.getInt(names+4*mid),1).compareTo(name) < 0)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		List<Resource> list = new ArrayList<Resource>(1);
+		for(int i=lo;i<count;i++){
+			int n = buffer.getInt(names+4*i);
+			if(!getLine(n,1).equals(name))
+				break;
+			list.add(new Resource(n));
+		}
+		return list;
+	}
+
+	private String getRecord(int n){
+		int start = buffer.getInt(offsets+4*n), end = buffer.getInt(offsets+4*(n+1));
+		return getString(records+start,end-start);
+	}
+
+	/**
+	 * single line of a record (0 - URI, 1 - name) without decoding the whole record
+	 */
+	private String getLine(int n, int line){
+		int start = records+buffer.getInt(offsets+4*n), end = records+buffer.getInt(offsets+4*(n+1));
+		for(int l=0;l<line;l++){
+			while(start < end && buffer.get(start) != '\n')
+				start++;
+			start++;
+		}
+		int i = start;
+		while(i < end && buffer.get(i) != '\n')
+			i++;
+		return getString(start,Math.max(0,i-start));
+	}
+
+	private String getString(int position, int length){
+		byte [] b = new byte [length];
+		for(int i=0;i<length;i++)
+			b[i] = buffer.get(position+i);
+		return new String(b,TermDictionary.UTF8);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 2){
+			System.err.println("Usage: java "+OntologySnapshot.class.getName()+" <cache directory> <ontology files>");
+			System.err.println("writes snapshots of ontologies that changed since their last snapshot");
+			return;
+		}
+		File cacheDir = new File(args[0]);
+		for(int i=1;i<args.length;i++){
+			long time = System.currentTimeMillis();
+			File f = new File(args[i]);
+			boolean cached = isCached(f,cacheDir);
+			OntologySnapshot snapshot = load(f,cacheDir);
+			System.out.println((cached?"mapped ":"wrote ")+f.getName()+" snapshot of "+snapshot.getResourceCount()+" resources in "+(System.currentTimeMillis()-time)+" ms");
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.coode.owlapi.owlxml.renderer.OWLXMLObjectRenderer;
+import org.coode.owlapi.owlxml.renderer.OWLXMLWriter;
+import org.semanticweb.owlapi.io.OWLXMLOntologyFormat;
+import org.semanticweb.owlapi.io.StreamDocumentTarget;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLImportsDeclaration;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyFormat;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.OWLOntologyStorageException;
+import org.semanticweb.owlapi.vocab.Namespaces;
+import org.semanticweb.owlapi.vocab.OWLXMLVocabulary;
+import org.semanticweb.owlapi.vocab.PrefixOWLOntologyFormat;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.IOntologyException;
+import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
+
+/**
+ * write ontologies through a buffered file channel.
+ * Ontologies in OWL/XML (the format of deepphe/ and cancer_models/) are streamed: every axiom is rendered
+ * straight to the output as it is taken from the ontology's index of its type, so nothing but the axioms
+ * already in the ontology is held in memory. OWL-API's own renderer sorts a copy of all axioms first.
+ * Axioms come out grouped by type (declarations first), in the order of the index rather than sorted.
+ * Other formats are saved through OWL-API. Output is buffered, and it is written next to the destination
+ * and moved in place when complete, so a failed save never leaves a truncated ontology behind.
+ * Files that end with .gz are gzipped, plain files stay loadable by OOntology.loadOntology()
+ */
+public class OntologyWriter {
+	public static final int BUFFER_SIZE = 64*1024;
+	public static final String GZIP_SUFFIX = ".gz";
+
+	/**
+	 * save ontology to its own location in its original format
+	 * @param ont
+	 * @throws IOntologyException
+	 */
+	public static void save(IOntology ont) throws IOntologyException{
+		OOntology o = (OOntology) ont;
+		IRI iri = o.getOWLOntologyManager().getOntologyDocumentIRI(o.getOWLOntology());
+		if(iri == null || !"file".equals(iri.getScheme())){
+			ont.save();
+			return;
+		}
+		write(ont,new File(iri.toURI()));
+	}
+
+	/**
+	 * write ontology to a given file, file that ends with .gz is compressed
+	 * @param ont
+	 * @param file
+	 * @throws IOntologyException
+	 */
+	public static void write(IOntology ont, File file) throws IOntologyException{
+		write(ont,file,file.getName().endsWith(GZIP_SUFFIX));
+	}
+
+	/**
+	 * write ontology to a given file
+	 * @param ont
+	 * @param file
+	 * @param gzip - compress output
+	 * @throws IOntologyException
+	 */
+	public static void write(IOntology ont, File file, boolean gzip) throws IOntologyException{
+		OOntology o = (OOntology) ont;
+		OWLOntologyManager manager = o.getOWLOntologyManager();
+		OWLOntology owl = o.getOWLOntology();
+		OWLOntologyFormat format = manager.getOntologyFormat(owl);
+		if(format == null)
+			format = new OWLXMLOntologyFormat();
+
+		Path path = file.getAbsoluteFile().toPath();
+		Path temp = path.resolveSibling(path.getFileName()+".tmp");
+		try{
+			if(path.getParent() != null)
+				Files.createDirectories(path.getParent());
+			OutputStream out = open(temp,gzip);
+			try{
+				if(format instanceof OWLXMLOntologyFormat)
+					writeOWLXML(owl,format,out);
+				else
+					manager.saveOntology(owl,format,new StreamDocumentTarget(out));
+			}finally{
+				out.close();
+			}
+			Files.move(temp,path,StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+		}catch(IOException e){
+			throw new IOntologyException("Unable to write ontology to "+file,e);
+		}catch(OWLOntologyStorageException e){
+			throw new IOntologyException("Unable to write ontology to "+file,e);
+		}finally{
+			try {
+				Files.deleteIfExists(temp);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * write ontology in OWL/XML one axiom at a time
+	 * @param owl
+	 * @param format - prefixes of a prefix format are written as well
+	 * @param out
+	 * @throws IOException
+	 * @throws OWLOntologyStorageException
+	 */
+	static void writeOWLXML(OWLOntology owl, OWLOntologyFormat format, OutputStream out) throws IOException, OWLOntologyStorageException{
+		Writer w = new OutputStreamWriter(out,"UTF-8");
+		OWLXMLWriter writer = new OWLXMLWriter(w,owl);
+		writer.startDocument(owl);
+		// same prefixes as OWL-API's OWL/XML renderer
+		Map<String,String> prefixes = Collections.emptyMap();
+		if(format instanceof PrefixOWLOntologyFormat)
+			prefixes = ((PrefixOWLOntologyFormat) format).getPrefixName2PrefixMap();
+		for(String name: prefixes.keySet()){
+			String prefix = prefixes.get(name);
+			if(prefix != null && prefix.length() > 0)
+				writer.writePrefix(name,prefix);
+		}
+		if(!prefixes.containsKey("rdf:"))
+			writer.writePrefix("rdf:",Namespaces.RDF.toString());
+		if(!prefixes.containsKey("rdfs:"))
+			writer.writePrefix("rdfs:",Namespaces.RDFS.toString());
+		if(!prefixes.containsKey("xsd:"))
+			writer.writePrefix("xsd:",Namespaces.XSD.toString());
+		if(!prefixes.containsKey("owl:"))
+			writer.writePrefix("owl:",Namespaces.OWL.toString());
+
+		OWLXMLObjectRenderer renderer = new OWLXMLObjectRenderer(writer);
+		for(OWLImportsDeclaration d: owl.getImportsDeclarations()){
+			writer.writeStartElement(OWLXMLVocabulary.IMPORT);
+			writer.writeTextContent(d.getIRI().toString());
+			writer.writeEndElement();
+		}
+		for(OWLAnnotation a: owl.getAnnotations())
+			a.accept(renderer);
+		for(AxiomType<?> type: getAxiomTypes()){
+			for(OWLAxiom ax: owl.getAxioms(type))
+				ax.accept(renderer);
+		}
+		writer.endDocument();
+		w.flush();
+	}
+
+	/**
+	 * axiom types in a fixed order, declarations first
+	 */
+	private static List<AxiomType<?>> getAxiomTypes(){
+		List<AxiomType<?>> types = new ArrayList<AxiomType<?>>(AxiomType.AXIOM_TYPES);
+		Collections.sort(types,new Comparator<AxiomType<?>>() {
+			public int compare(AxiomType<?> a, AxiomType<?> b) {
+				return a.getIndex()-b.getIndex();
+			}
+		});
+		return types;
+	}
+
+	/**
+	 * open buffered channel stream to a file
+	 * @param path
+	 * @param gzip
+	 * @return
+	 * @throws IOException
+	 */
+	private static OutputStream open(Path path, boolean gzip) throws IOException{
+		FileChannel channel = FileChannel.open(path,StandardOpenOption.CREATE,StandardOpenOption.TRUNCATE_EXISTING,StandardOpenOption.WRITE);
+		OutputStream out = Channels.newOutputStream(channel);
+		if(gzip)
+			return new GZIPOutputStream(out,BUFFER_SIZE);
+		return new BufferedOutputStream(out,BUFFER_SIZE);
+	}
+}
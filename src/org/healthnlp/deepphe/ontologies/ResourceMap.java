@@ -0,0 +1,63 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+
+/**
+ * conversion scoped map of source resources to target resources they were copied to.
+ * Resources are looked up by identity first, since the same source object is reached
+ * over and over through super classes, equivalent classes, domains, ranges and fillers.
+ * A source resource that comes back as a different wrapper object is found by its URI
+ * and remembered under the new identity as well.
+ */
+public class ResourceMap {
+	private Map<IResource,IResource> identityMap = new IdentityHashMap<IResource, IResource>();
+	private Map<URI,IResource> uriMap = new HashMap<URI, IResource>();
+
+	/**
+	 * get target resource for a given source resource
+	 * @param source
+	 * @return target resource or null if source was not converted yet
+	 */
+	public IResource get(IResource source){
+		IResource target = identityMap.get(source);
+		if(target == null){
+			target = uriMap.get(source.getURI());
+			if(target != null)
+				identityMap.put(source,target);
+		}
+		return target;
+	}
+
+	/**
+	 * remember target resource for a given source resource
+	 * @param source
+	 * @param target
+	 */
+	public void put(IResource source, IResource target){
+		identityMap.put(source,target);
+		uriMap.put(source.getURI(),target);
+	}
+
+	/**
+	 * has source resource been converted
+	 * @param source
+	 * @return
+	 */
+	public boolean contains(IResource source){
+		return get(source) != null;
+	}
+
+	public int size(){
+		return uriMap.size();
+	}
+
+	public void clear(){
+		identityMap.clear();
+		uriMap.clear();
+	}
+}
@@ -0,0 +1,83 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.ILogicExpression;
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+import edu.pitt.dbmi.nlp.noble.ontology.IRestriction;
+
+/**
+ * restrictions and logic expressions copied for a single target class, that are not yet added to it.
+ * Copies of a class are collected first, so that a tool can skip the ones its target already has
+ * and remember what it added for the next incremental run.
+ */
+public class RestrictionChanges {
+	private IClass target;
+	private IResource source;
+	private List<Object> equivalent = new ArrayList<Object>();
+	private List<Object> necessary = new ArrayList<Object>();
+
+	public RestrictionChanges(IClass target){
+		this.target = target;
+	}
+
+	public IClass getTarget() {
+		return target;
+	}
+
+	/**
+	 * source resource that restrictions were copied from (if it was given)
+	 * @return
+	 */
+	public IResource getSource() {
+		return source;
+	}
+
+	public void setSource(IResource source) {
+		this.source = source;
+	}
+
+	/**
+	 * add restriction or logic expression that is equivalent to target class
+	 * @param o
+	 */
+	public void addEquivalent(Object o){
+		equivalent.add(o);
+	}
+
+	/**
+	 * add restriction or logic expression that is necessary for target class
+	 * @param o
+	 */
+	public void addNecessary(Object o){
+		necessary.add(o);
+	}
+
+	public List<Object> getEquivalent() {
+		return equivalent;
+	}
+
+	public List<Object> getNecessary() {
+		return necessary;
+	}
+
+	/**
+	 * add buffered restrictions to target class
+	 */
+	public void apply(){
+		for(Object o: equivalent){
+			if(o instanceof IRestriction)
+				target.addEquivalentRestriction((IRestriction)o);
+			else if(o instanceof ILogicExpression)
+				target.addEquivalentRestriction((ILogicExpression)o);
+		}
+		for(Object o: necessary){
+			if(o instanceof IRestriction)
+				target.addNecessaryRestriction((IRestriction)o);
+			else if(o instanceof ILogicExpression)
+				target.addNecessaryRestriction((ILogicExpression)o);
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.ILogicExpression;
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+import edu.pitt.dbmi.nlp.noble.ontology.IRestriction;
+
+/**
+ * hash index of restriction signatures for each target class.
+ * A signature is made of restriction property, restriction type and filler expression,
+ * where operands of an expression are sorted, so the same filler written in a different order gets the same signature.
+ * Signatures of a class are collected from its restrictions the first time it is looked at, and
+ * kept up to date as restrictions are added through the index, so a duplicate check is a few hash lookups
+ * instead of comparing against every restriction on the same property.
+ * Super classes come from a HierarchyIndex when one is given, instead of asking the ontology for the full closure of every class.
+ */
+public class RestrictionIndex {
+	private Map<IClass,Set<String>> signatures = new HashMap<IClass, Set<String>>();
+	private HierarchyIndex hierarchy;
+
+	public RestrictionIndex(){}
+
+	/**
+	 * restriction index that looks up super classes in a hierarchy index
+	 * @param hierarchy
+	 */
+	public RestrictionIndex(HierarchyIndex hierarchy){
+		this.hierarchy = hierarchy;
+	}
+
+	/**
+	 * does class (or one of its super classes) already have an equivalent restriction
+	 * @param cls
+	 * @param r
+	 * @return
+	 */
+	public boolean contains(IClass cls, IRestriction r){
+		String signature = getSignature(r);
+		if(getSignatures(cls).contains(signature))
+			return true;
+		for(IClass p: getSuperClasses(cls)){
+			if(getSignatures(p).contains(signature))
+				return true;
+		}
+		return false;
+	}
+
+	private List<IClass> getSuperClasses(IClass cls){
+		if(hierarchy != null && hierarchy.contains(cls))
+			return hierarchy.getSuperClasses(cls);
+		return Arrays.asList(cls.getSuperClasses());
+	}
+
+	/**
+	 * record restriction that was added to a class
+	 * @param cls
+	 * @param r
+	 */
+	public void add(IClass cls, IRestriction r){
+		getSignatures(cls).add(getSignature(r));
+	}
+
+	/**
+	 * signatures of restrictions asserted on a class
+	 * @param cls
+	 * @return
+	 */
+	private Set<String> getSignatures(IClass cls){
+		Set<String> set = signatures.get(cls);
+		if(set == null){
+			set = new HashSet<String>();
+			addSignatures(set,cls.getEquivalentRestrictions());
+			addSignatures(set,cls.getDirectNecessaryRestrictions());
+			signatures.put(cls,set);
+		}
+		return set;
+	}
+
+	private void addSignatures(Set<String> set, ILogicExpression exp){
+		if(exp == null)
+			return;
+		for(Object o: exp){
+			if(o instanceof IRestriction)
+				set.add(getSignature((IRestriction)o));
+			else if(o instanceof ILogicExpression)
+				addSignatures(set,(ILogicExpression)o);
+		}
+	}
+
+	/**
+	 * canonical signature of a restriction
+	 * @param r
+	 * @return
+	 */
+	public static String getSignature(IRestriction r){
+		StringBuilder b = new StringBuilder();
+		appendSignature(b,r);
+		return b.toString();
+	}
+
+	/**
+	 * canonical signature of a logic expression
+	 * @param exp
+	 * @return
+	 */
+	public static String getSignature(ILogicExpression exp){
+		StringBuilder b = new StringBuilder();
+		appendSignature(b,exp);
+		return b.toString();
+	}
+
+	private static void appendSignature(StringBuilder b, IRestriction r){
+		b.append(r.getProperty() == null?null:r.getProperty().getURI());
+		b.append(' ').append(r.getRestrictionType()).append(' ');
+		appendSignature(b,r.getParameter());
+	}
+
+	private static void appendSignature(StringBuilder b, ILogicExpression exp){
+		if(exp == null){
+			b.append("null");
+			return;
+		}
+		List<String> operands = new ArrayList<String>(exp.size());
+		for(Object o: exp){
+			StringBuilder ob = new StringBuilder();
+			if(o instanceof IRestriction)
+				appendSignature(ob,(IRestriction)o);
+			else if(o instanceof ILogicExpression)
+				appendSignature(ob,(ILogicExpression)o);
+			else if(o instanceof IResource)
+				ob.append(((IResource)o).getURI());
+			else
+				ob.append(o);
+			operands.add(ob.toString());
+		}
+		Collections.sort(operands);
+		b.append('(').append(exp.getExpressionType());
+		for(String s: operands){
+			b.append(' ').append(s);
+		}
+		b.append(')');
+	}
+}
@@ -0,0 +1,160 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.AddOntologyAnnotation;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLImportsDeclaration;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.util.AutoIRIMapper;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntologyException;
+
+/**
+ * read-only copy of a parsed ontology (with its imports) that several conversions can import at the same time.
+ * The file is parsed once, then only its axioms and annotations are kept in unmodifiable sets,
+ * OWL-API axioms are immutable, so they can be shared between threads. Every conversion adds the ontology
+ * to its own manager from those axioms, which skips parsing and shares axiom objects instead of copying them.
+ * Each manager still builds its own indexes over the shared axioms, so every conversion that imports it
+ * holds those indexes, only the parse and the axiom objects are saved.
+ * Ontology and version IRIs are kept, an ontology of the imports closure without an IRI can not be shared.
+ * Changes a conversion makes to its copy stay in its own manager.
+ */
+public class SharedOntology {
+	private File file;
+	private long modified, length;
+	private List<Part> parts;
+
+	/**
+	 * single ontology of imports closure
+	 */
+	private static class Part {
+		OWLOntologyID id;
+		IRI documentIRI;
+		Set<OWLAxiom> axioms;
+		Set<OWLAnnotation> annotations;
+		Set<OWLImportsDeclaration> imports;
+	}
+
+	private SharedOntology(File file){
+		this.file = file.getAbsoluteFile();
+		this.modified = file.lastModified();
+		this.length = file.length();
+	}
+
+	/**
+	 * parse ontology file and its imports
+	 * @param file
+	 * @return
+	 * @throws IOntologyException
+	 */
+	public static SharedOntology load(File file) throws IOntologyException{
+		SharedOntology shared = new SharedOntology(file);
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		manager.addIRIMapper(new AutoIRIMapper(shared.file.getParentFile(),false));
+		OWLOntology ontology;
+		try{
+			ontology = manager.loadOntologyFromOntologyDocument(shared.file);
+		}catch(OWLOntologyCreationException e){
+			throw new IOntologyException("Unable to load shared ontology "+file,e);
+		}
+		List<Part> parts = new ArrayList<Part>();
+		// root first, then its imports
+		for(OWLOntology o: manager.getImportsClosure(ontology)){
+			// there is nothing that a shared copy of an anonymous ontology could be created or imported by
+			if(o.getOntologyID().isAnonymous())
+				throw new IOntologyException("Unable to share anonymous ontology "+manager.getOntologyDocumentIRI(o)+" of "+file);
+			Part p = new Part();
+			p.id = o.getOntologyID();
+			p.documentIRI = manager.getOntologyDocumentIRI(o);
+			p.axioms = Collections.unmodifiableSet(new HashSet<OWLAxiom>(o.getAxioms()));
+			p.annotations = Collections.unmodifiableSet(new HashSet<OWLAnnotation>(o.getAnnotations()));
+			p.imports = Collections.unmodifiableSet(new HashSet<OWLImportsDeclaration>(o.getImportsDeclarations()));
+			if(o == ontology)
+				parts.add(0,p);
+			else
+				parts.add(p);
+		}
+		shared.parts = Collections.unmodifiableList(parts);
+		return shared;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * ontology IRI
+	 * @return
+	 */
+	public IRI getIRI(){
+		return parts.get(0).id.getOntologyIRI();
+	}
+
+	/**
+	 * number of axioms of the ontology and its imports
+	 * @return
+	 */
+	public int getAxiomCount(){
+		int n = 0;
+		for(Part p: parts)
+			n += p.axioms.size();
+		return n;
+	}
+
+	/**
+	 * is file unchanged since it was parsed
+	 * @return
+	 */
+	public boolean isCurrent(){
+		return modified == file.lastModified() && length == file.length();
+	}
+
+	/**
+	 * create ontology and its imports in a manager, ontologies that a manager already has are left alone
+	 * @param manager
+	 * @return ontology of the file
+	 * @throws IOntologyException
+	 */
+	public OWLOntology addTo(OWLOntologyManager manager) throws IOntologyException{
+		List<OWLOntology> created = new ArrayList<OWLOntology>();
+		List<Part> added = new ArrayList<Part>();
+		try{
+			for(Part p: parts){
+				if(manager.contains(p.id.getOntologyIRI()))
+					continue;
+				OWLOntology o = manager.createOntology(p.id);
+				manager.addAxioms(o,p.axioms);
+				manager.setOntologyDocumentIRI(o,p.documentIRI);
+				for(OWLAnnotation a: p.annotations)
+					manager.applyChange(new AddOntologyAnnotation(o,a));
+				created.add(o);
+				added.add(p);
+			}
+		}catch(OWLOntologyCreationException e){
+			throw new IOntologyException("Unable to create shared ontology "+file,e);
+		}
+		// imports are declared once every ontology of the closure is there
+		for(int i=0;i<created.size();i++){
+			for(OWLImportsDeclaration d: added.get(i).imports)
+				manager.applyChange(new AddImport(created.get(i),d));
+		}
+		return manager.getOntology(getIRI());
+	}
+
+	public String toString(){
+		return file.getName()+" ("+getAxiomCount()+" axioms)";
+	}
+}
@@ -0,0 +1,367 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * lightweight index of an OWL/XML source ontology and the imported ontologies found next to it,
+ * built with a streaming parser without loading the ontologies.
+ * The index knows named super classes, labels, hasModel annotations and classes mentioned in class axioms,
+ * which is enough to tell which classes a model or domain conversion can reach.
+ * Filtered copies of the files, without axioms about classes that can not be reached, load much faster
+ * and take less heap than the originals.
+ */
+public class SourceScan {
+	private static final String RDFS_LABEL = "http://www.w3.org/2000/01/rdf-schema#label";
+	private static final String HAS_MODEL = "#hasModel";
+	private static final Set<String> CLASS_AXIOMS = new HashSet<String>(Arrays.asList("SubClassOf","EquivalentClasses","DisjointClasses"));
+	private Map<File,List<Set<String>>> files = new LinkedHashMap<File, List<Set<String>>>();
+	private Set<String> declared = new HashSet<String>();
+	private Set<String> annotated = new HashSet<String>();
+	private Map<String,Set<String>> superClasses = new HashMap<String, Set<String>>();
+	private Map<String,Set<String>> subClasses = new HashMap<String, Set<String>>();
+	private Map<String,Set<String>> references = new HashMap<String, Set<String>>();
+	private Map<String,Set<String>> labels = new HashMap<String, Set<String>>();
+	private File file;
+
+	/**
+	 * scan ontology file and ontologies it imports that can be found in the same directory
+	 * @param file
+	 * @throws IOException
+	 */
+	public SourceScan(File file) throws IOException{
+		this.file = file.getCanonicalFile();
+		Deque<File> queue = new ArrayDeque<File>();
+		queue.add(this.file);
+		while(!queue.isEmpty()){
+			File f = queue.poll();
+			if(files.containsKey(f))
+				continue;
+			scan(f);
+			for(String iri: new OntologyHeader(f).getImports()){
+				File i = new File(f.getParentFile(),OntologyHeader.getFileName(iri));
+				if(i.exists())
+					queue.add(i.getCanonicalFile());
+			}
+		}
+	}
+
+	/**
+	 * number of classes declared in scanned files
+	 * @return
+	 */
+	public int getClassCount(){
+		return declared.size();
+	}
+
+	/**
+	 * get classes that a conversion can reach: classes with hasModel annotation, classes whose label matches a model class,
+	 * classes that are named in equivalence map, and classes under a super class that is not declared in any scanned file.
+	 * Together with their sub-classes, classes their axioms refer to and all super classes of those.
+	 * @param modelLabels - normalized labels of model classes
+	 * @param classNames - names of additional classes to reach
+	 * @return set of class IRIs
+	 */
+	public Set<String> getReachable(Collection<String> modelLabels, Collection<String> classNames){
+		Set<String> names = new HashSet<String>(classNames);
+		Set<String> labelSet = new HashSet<String>(modelLabels);
+		Deque<String> queue = new ArrayDeque<String>();
+		for(String iri: declared){
+			if(annotated.contains(iri) || names.contains(getName(iri)) || hasLabel(iri,labelSet) || hasExternalSuperClass(iri))
+				queue.add(iri);
+		}
+
+		// seed classes and everything under them gets copied, referenced classes only need to be there
+		Set<String> reachable = new HashSet<String>();
+		Set<String> referenced = new HashSet<String>();
+		while(!queue.isEmpty()){
+			String iri = queue.poll();
+			if(!reachable.add(iri))
+				continue;
+			queue.addAll(get(subClasses,iri));
+			referenced.addAll(get(references,iri));
+		}
+		referenced.addAll(reachable);
+
+		// keep super classes, so that hierarchy and annotations of reachable classes look the same
+		Set<String> keep = new HashSet<String>();
+		queue.addAll(referenced);
+		while(!queue.isEmpty()){
+			String iri = queue.poll();
+			if(keep.add(iri))
+				queue.addAll(get(superClasses,iri));
+		}
+		return keep;
+	}
+
+	/**
+	 * write copies of scanned files without axioms about classes that are not kept,
+	 * copies have the same file names so that imports resolve between them
+	 * @param keep - IRIs of classes to keep
+	 * @param dir - output directory
+	 * @return copy of the scanned source file
+	 * @throws IOException
+	 */
+	public File writeReachable(Set<String> keep, File dir) throws IOException{
+		dir.mkdirs();
+		for(File f: files.keySet()){
+			write(f,files.get(f),keep,new File(dir,f.getName()));
+		}
+		return new File(dir,file.getName());
+	}
+
+	private boolean hasLabel(String iri, Set<String> labelSet){
+		if(labelSet.contains(LabelIndex.normalize(getName(iri))))
+			return true;
+		for(String l: get(labels,iri)){
+			if(labelSet.contains(LabelIndex.normalize(l)))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * is there a super class that we know nothing about (from an import that was not scanned)
+	 * @param iri
+	 * @return
+	 */
+	private boolean hasExternalSuperClass(String iri){
+		for(String s: get(superClasses,iri)){
+			if(!declared.contains(s))
+				return true;
+		}
+		return false;
+	}
+
+	private static String getName(String iri){
+		int i = Math.max(iri.lastIndexOf('#'),iri.lastIndexOf('/'));
+		return iri.substring(i+1);
+	}
+
+	private static Set<String> get(Map<String,Set<String>> map, String key){
+		Set<String> set = map.get(key);
+		return (set == null)?Collections.<String>emptySet():set;
+	}
+
+	private static void put(Map<String,Set<String>> map, String key, String value){
+		Set<String> set = map.get(key);
+		if(set == null){
+			set = new HashSet<String>();
+			map.put(key,set);
+		}
+		set.add(value);
+	}
+
+	/**
+	 * single pass over an OWL/XML file, records subject classes of every top level element
+	 * @param f
+	 * @throws IOException
+	 */
+	private void scan(File f) throws IOException{
+		List<Set<String>> subjects = new ArrayList<Set<String>>();
+		InputStream in = new BufferedInputStream(new FileInputStream(f));
+		try{
+			XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+			Map<String,String> prefixes = new HashMap<String, String>();
+			String base = null, axiom = null, property = null, subject = null;
+			List<String> named = new ArrayList<String>(), nested = new ArrayList<String>();
+			StringBuilder literal = null;
+			int depth = 0;
+			while(reader.hasNext()){
+				int event = reader.next();
+				if(event == XMLStreamConstants.START_ELEMENT){
+					depth ++;
+					String name = reader.getLocalName();
+					if(depth == 1){
+						base = reader.getAttributeValue(XMLConstants.XML_NS_URI,"base");
+						if(base == null)
+							base = reader.getAttributeValue(null,"ontologyIRI");
+					}else if(depth == 2){
+						axiom = name;
+						property = subject = null;
+						literal = null;
+						named.clear();
+						nested.clear();
+						if("Prefix".equals(name))
+							prefixes.put(reader.getAttributeValue(null,"name"),reader.getAttributeValue(null,"IRI"));
+					}else if("Class".equals(name)){
+						String iri = resolve(base,prefixes,reader);
+						if(depth == 3)
+							named.add(iri);
+						else
+							nested.add(iri);
+					}else if("AnnotationProperty".equals(name) && depth == 3){
+						property = resolve(base,prefixes,reader);
+					}else if(("IRI".equals(name) || "AbbreviatedIRI".equals(name)) && depth == 3){
+						String text = reader.getElementText().trim();
+						// first IRI is the annotated subject, an IRI value that follows it must not replace it
+						if(subject == null)
+							subject = "IRI".equals(name)?resolve(base,text):expand(prefixes,text);
+						depth --;
+					}else if("Literal".equals(name) && depth == 3){
+						literal = new StringBuilder(reader.getElementText());
+						depth --;
+					}
+				}else if(event == XMLStreamConstants.END_ELEMENT){
+					if(depth == 2)
+						subjects.add(addAxiom(axiom,named,nested,property,subject,literal));
+					depth --;
+				}
+			}
+			reader.close();
+		}catch(XMLStreamException e){
+			throw new IOException("Unable to scan ontology "+f,e);
+		}finally{
+			in.close();
+		}
+		files.put(f,subjects);
+	}
+
+	/**
+	 * add top level element to the index
+	 * @return classes the element is about, or null if element should always be kept
+	 */
+	private Set<String> addAxiom(String axiom, List<String> named, List<String> nested, String property, String subject, StringBuilder literal){
+		if("Declaration".equals(axiom)){
+			if(named.isEmpty())
+				return null;
+			declared.add(named.get(0));
+			return Collections.singleton(named.get(0));
+		}else if("SubClassOf".equals(axiom)){
+			if(named.isEmpty())
+				return null;
+			String sub = named.get(0);
+			for(int i=1;i<named.size();i++){
+				put(superClasses,sub,named.get(i));
+				put(subClasses,named.get(i),sub);
+			}
+			for(String c: nested)
+				put(references,sub,c);
+			return Collections.singleton(sub);
+		}else if(CLASS_AXIOMS.contains(axiom)){
+			if(named.isEmpty())
+				return null;
+			for(String c: named){
+				for(String o: named){
+					if(!o.equals(c))
+						put(references,c,o);
+				}
+				for(String o: nested)
+					put(references,c,o);
+			}
+			return new HashSet<String>(named);
+		}else if("AnnotationAssertion".equals(axiom)){
+			if(subject == null)
+				return null;
+			if(RDFS_LABEL.equals(property) && literal != null)
+				put(labels,subject,literal.toString());
+			else if(property != null && property.endsWith(HAS_MODEL))
+				annotated.add(subject);
+			return Collections.singleton(subject);
+		}
+		return null;
+	}
+
+	/**
+	 * copy file leaving out top level elements whose classes are not kept
+	 * @throws IOException
+	 */
+	private void write(File source, List<Set<String>> subjects, Set<String> keep, File target) throws IOException{
+		InputStream in = new BufferedInputStream(new FileInputStream(source));
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(target));
+		try{
+			XMLEventReader reader = XMLInputFactory.newInstance().createXMLEventReader(in);
+			XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(out,"UTF-8");
+			int depth = 0, element = 0;
+			boolean skip = false;
+			while(reader.hasNext()){
+				XMLEvent e = reader.nextEvent();
+				if(e.isStartElement()){
+					depth ++;
+					if(depth == 2)
+						skip = isSkipped(subjects.get(element++),keep);
+				}
+				if(!skip)
+					writer.add(e);
+				if(e.isEndElement()){
+					if(depth == 2)
+						skip = false;
+					depth --;
+				}
+			}
+			writer.flush();
+			writer.close();
+			reader.close();
+		}catch(XMLStreamException e){
+			throw new IOException("Unable to write "+target,e);
+		}finally{
+			in.close();
+			out.close();
+		}
+	}
+
+	private boolean isSkipped(Set<String> subjects, Set<String> keep){
+		if(subjects == null)
+			return false;
+		for(String s: subjects){
+			// keep axioms about classes and resources this scan does not know
+			if(keep.contains(s) || !declared.contains(s))
+				return false;
+		}
+		return true;
+	}
+
+	private static String resolve(String base, Map<String,String> prefixes, XMLStreamReader reader){
+		String iri = reader.getAttributeValue(null,"IRI");
+		if(iri != null)
+			return resolve(base,iri);
+		return expand(prefixes,reader.getAttributeValue(null,"abbreviatedIRI"));
+	}
+
+	private static String resolve(String base, String iri){
+		if(base == null || iri.contains(":"))
+			return iri;
+		try{
+			return URI.create(base).resolve(iri).toString();
+		}catch(IllegalArgumentException e){
+			return iri;
+		}
+	}
+
+	private static String expand(Map<String,String> prefixes, String abbreviated){
+		if(abbreviated == null)
+			return null;
+		int i = abbreviated.indexOf(':');
+		String prefix = (i < 0)?null:prefixes.get(abbreviated.substring(0,i));
+		return (prefix == null)?abbreviated:prefix+abbreviated.substring(i+1);
+	}
+}
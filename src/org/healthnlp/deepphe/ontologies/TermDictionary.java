@@ -0,0 +1,230 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * read only term dictionary compiled by TermDictionaryCompiler.
+ * The file is memory mapped, so opening it does not read it, and processes that open the same file
+ * share its pages through the OS page cache. Terms are kept sorted by their UTF-8 bytes,
+ * exact and prefix lookups are binary searches over the mapped term table.
+ * <pre>
+ * magic "DPTERMS1"
+ * int term count, int concept count, int posting count
+ * int [term count + 1] term offsets        - into term bytes
+ * int [term count + 1] posting offsets     - into postings
+ * int [posting count] postings             - concept numbers
+ * int [concept count + 1] concept offsets  - into concept bytes
+ * term bytes                               - normalized terms
+ * concept bytes                            - id TAB uri TAB preferred term
+ * </pre>
+ * A dictionary can be shared between threads.
+ */
+public class TermDictionary {
+	public static final String MAGIC = "DPTERMS1";
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	private final ByteBuffer buffer;
+	private final int termCount, conceptCount, postingCount;
+	private final int termOffsets, postingOffsets, postings, conceptOffsets, termBytes, conceptBytes;
+
+	/**
+	 * dictionary entry
+	 */
+	public static class Concept {
+		private String id, uri, preferredTerm;
+
+		Concept(String id, String uri, String preferredTerm){
+			this.id = id;
+			this.uri = uri;
+			this.preferredTerm = preferredTerm;
+		}
+
+		/**
+		 * DP identifier of a concept (empty if concept was never converted)
+		 * @return
+		 */
+		public String getId() {
+			return id;
+		}
+
+		public String getURI() {
+			return uri;
+		}
+
+		public String getPreferredTerm() {
+			return preferredTerm;
+		}
+
+		public String toString(){
+			return (id.length() > 0?id:uri)+" ("+preferredTerm+")";
+		}
+	}
+
+	/**
+	 * memory map compiled dictionary
+	 * @param file
+	 * @throws IOException
+	 */
+	public TermDictionary(File file) throws IOException{
+		RandomAccessFile raf = new RandomAccessFile(file,"r");
+		try{
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+			buffer = map;
+		}finally{
+			// mapping stays valid after the file is closed
+			raf.close();
+		}
+		byte [] magic = new byte [MAGIC.length()];
+		for(int i=0;i<magic.length;i++)
+			magic[i] = buffer.get(i);
+		if(!MAGIC.equals(new String(magic,UTF8)))
+			throw new IOException("Not a compiled term dictionary: "+file);
+		int p = magic.length;
+		termCount = buffer.getInt(p);
+		conceptCount = buffer.getInt(p+4);
+		postingCount = buffer.getInt(p+8);
+		termOffsets = p+12;
+		postingOffsets = termOffsets+4*(termCount+1);
+		postings = postingOffsets+4*(termCount+1);
+		conceptOffsets = postings+4*postingCount;
+		termBytes = conceptOffsets+4*(conceptCount+1);
+		conceptBytes = termBytes+buffer.getInt(termOffsets+4*termCount);
+	}
+
+	public int getTermCount() {
+		return termCount;
+	}
+
+	public int getConceptCount() {
+		return conceptCount;
+	}
+
+	/**
+	 * normalize term the same way as compiler does: lowercase and single spaces between words
+	 * @param term
+	 * @return
+	 */
+	public static String normalize(String term){
+		StringBuilder b = new StringBuilder(term.length());
+		boolean space = false;
+		for(int i=0;i<term.length();i++){
+			char c = term.charAt(i);
+			if(Character.isWhitespace(c)){
+				space = b.length() > 0;
+			}else{
+				if(space)
+					b.append(' ');
+				b.append(c);
+				space = false;
+			}
+		}
+		return b.toString().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * concepts that have exactly this term (after normalization)
+	 * @param term
+	 * @return
+	 */
+	public List<Concept> lookup(String term){
+		byte [] key = normalize(term).getBytes(UTF8);
+		int i = lowerBound(key);
+		if(i < termCount && compare(i,key,false) == 0)
+			return getConcepts(i);
+		return Collections.emptyList();
+	}
+
+	/**
+	 * terms that start with a prefix (after normalization), in sorted order
+	 * @param prefix
+	 * @param limit - maximum number of terms to return
+	 * @return
+	 */
+	public List<String> prefix(String prefix, int limit){
+		byte [] key = normalize(prefix).getBytes(UTF8);
+		List<String> terms = new ArrayList<String>();
+		for(int i=lowerBound(key);i<termCount && terms.size() < limit && compare(i,key,true) == 0;i++){
+			terms.add(getTerm(i));
+		}
+		return terms;
+	}
+
+	/**
+	 * does dictionary contain a term
+	 * @param term
+	 * @return
+	 */
+	public boolean contains(String term){
+		return !lookup(term).isEmpty();
+	}
+
+	/**
+	 * first term index that is not less than key
+	 */
+	private int lowerBound(byte [] key){
+		int lo = 0, hi = termCount;
+		while(lo < hi){
+			int mid = (lo+hi) >>> 1;
+			if(compare(mid,key,false) < 0)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * compare term with a key by unsigned bytes
+	 * @param prefix - only compare the first key length bytes of the term
+	 */
+	private int compare(int term, byte [] key, boolean prefix){
+		int start = termBytes+buffer.getInt(termOffsets+4*term);
+		int length = termBytes+buffer.getInt(termOffsets+4*(term+1))-start;
+		int n = Math.min(length,key.length);
+		for(int i=0;i<n;i++){
+			int a = buffer.get(start+i) & 0xff, b = key[i] & 0xff;
+			if(a != b)
+				return a-b;
+		}
+		if(prefix && length >= key.length)
+			return 0;
+		return length-key.length;
+	}
+
+	private String getTerm(int term){
+		int start = buffer.getInt(termOffsets+4*term), end = buffer.getInt(termOffsets+4*(term+1));
+		return getString(termBytes+start,end-start);
+	}
+
+	private List<Concept> getConcepts(int term){
+		int start = buffer.getInt(postingOffsets+4*term), end = buffer.getInt(postingOffsets+4*(term+1));
+		List<Concept> list = new ArrayList<Concept>(end-start);
+		for(int i=start;i<end;i++){
+			list.add(getConcept(buffer.getInt(postings+4*i)));
+		}
+		return list;
+	}
+
+	private Concept getConcept(int concept){
+		int start = buffer.getInt(conceptOffsets+4*concept), end = buffer.getInt(conceptOffsets+4*(concept+1));
+		String [] p = getString(conceptBytes+start,end-start).split("\t",-1);
+		return new Concept(p[0],p[1],p[2]);
+	}
+
+	private String getString(int position, int length){
+		byte [] b = new byte [length];
+		for(int i=0;i<length;i++)
+			b[i] = buffer.get(position+i);
+		return new String(b,UTF8);
+	}
+}
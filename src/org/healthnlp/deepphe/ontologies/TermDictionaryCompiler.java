@@ -0,0 +1,237 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+import edu.pitt.dbmi.nlp.noble.ontology.IResourceIterator;
+import edu.pitt.dbmi.nlp.noble.ontology.owl.OOntology;
+
+/**
+ * compile labels, synonyms and DP IDs of NLP ontologies and cancer models into a term dictionary file
+ * that is read by TermDictionary.
+ * DP IDs of NLP classes come from the rdfs:seeAlso links between model classes and NLP classes
+ * that ConvertOntologyURIs leaves behind, or from a mapping registry if one is given.
+ */
+public class TermDictionaryCompiler {
+	private static final Pattern DP_ID = Pattern.compile("DP\\d+");
+	private Map<String,Concept> concepts = new LinkedHashMap<String, Concept>();
+	private Map<String,String> seeAlso = new HashMap<String, String>();
+	private MappingRegistry mappings;
+
+	/**
+	 * terms of a single class
+	 */
+	private static class Concept {
+		String id = "", uri, preferredTerm;
+		Set<String> terms = new LinkedHashSet<String>();
+		int number;
+	}
+
+	/**
+	 * use mapping registry of a URI conversion to find DP IDs of NLP classes
+	 * @param mappings
+	 */
+	public void setMappings(MappingRegistry mappings) {
+		this.mappings = mappings;
+	}
+
+	/**
+	 * add classes of an ontology (and its imports), a class that was already added is skipped
+	 * @param ont
+	 */
+	public void add(IOntology ont){
+		IProperty synonym = ont.getProperty(OntologyQA.SYNONYM);
+		IProperty see = ont.getProperty(IProperty.RDFS_SEE_ALSO);
+		IResourceIterator it = ont.getAllClasses();
+		while(it.hasNext()){
+			IClass cls = (IClass) it.next();
+			if(cls == null)
+				continue;
+			String uri = ""+cls.getURI();
+			if(concepts.containsKey(uri))
+				continue;
+			Concept c = new Concept();
+			c.uri = uri;
+			if(DP_ID.matcher(cls.getName()).matches())
+				c.id = cls.getName();
+			for(String l: cls.getLabels())
+				c.terms.add(l);
+			if(synonym != null){
+				for(Object o: cls.getPropertyValues(synonym))
+					c.terms.add(o.toString());
+			}
+			c.preferredTerm = c.terms.isEmpty()?cls.getName().replace('_',' '):c.terms.iterator().next();
+			if(c.terms.isEmpty())
+				c.terms.add(c.preferredTerm);
+			if(see != null){
+				for(Object o: cls.getPropertyValues(see)){
+					String s = o.toString();
+					if(c.id.length() > 0){
+						// model class that points back to its NLP class
+						seeAlso.put(s,c.id);
+					}else if(s.startsWith(ConvertOntologyURIs.BASE_URL_PREFIX)){
+						// NLP class that points to its model class
+						String name = s.substring(s.lastIndexOf('#')+1);
+						if(DP_ID.matcher(name).matches())
+							c.id = name;
+					}
+				}
+			}
+			concepts.put(uri,c);
+		}
+	}
+
+	/**
+	 * DP ID of a class that does not have one of its own
+	 */
+	private String getId(Concept c){
+		if(c.id.length() > 0)
+			return c.id;
+		String id = seeAlso.get(c.uri);
+		if(id == null && mappings != null){
+			String target = mappings.getTarget(URI.create(c.uri));
+			if(target != null)
+				id = target.substring(target.lastIndexOf('#')+1);
+		}
+		return (id == null)?"":id;
+	}
+
+	/**
+	 * number of classes added so far
+	 * @return
+	 */
+	public int getConceptCount(){
+		return concepts.size();
+	}
+
+	/**
+	 * write compiled dictionary
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException{
+		// normalized term -> concepts, sorted by UTF-8 bytes
+		Map<byte [],List<Concept>> index = new TreeMap<byte [], List<Concept>>(new Comparator<byte []>() {
+			public int compare(byte[] a, byte[] b) {
+				int n = Math.min(a.length,b.length);
+				for(int i=0;i<n;i++){
+					int d = (a[i] & 0xff)-(b[i] & 0xff);
+					if(d != 0)
+						return d;
+				}
+				return a.length-b.length;
+			}
+		});
+		List<byte []> conceptBytes = new ArrayList<byte[]>();
+		int postingCount = 0;
+		for(Concept c: concepts.values()){
+			c.number = conceptBytes.size();
+			String s = getId(c)+"\t"+c.uri+"\t"+c.preferredTerm.replace('\t',' ');
+			conceptBytes.add(s.getBytes(TermDictionary.UTF8));
+			Set<String> normalized = new LinkedHashSet<String>();
+			for(String t: c.terms)
+				normalized.add(TermDictionary.normalize(t));
+			for(String t: normalized){
+				if(t.length() == 0)
+					continue;
+				byte [] key = t.getBytes(TermDictionary.UTF8);
+				List<Concept> list = index.get(key);
+				if(list == null){
+					list = new ArrayList<Concept>(1);
+					index.put(key,list);
+				}
+				list.add(c);
+				postingCount++;
+			}
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try{
+			out.write(TermDictionary.MAGIC.getBytes(TermDictionary.UTF8));
+			out.writeInt(index.size());
+			out.writeInt(conceptBytes.size());
+			out.writeInt(postingCount);
+			// term offsets
+			int offset = 0;
+			for(byte [] key: index.keySet()){
+				out.writeInt(offset);
+				offset += key.length;
+			}
+			out.writeInt(offset);
+			// posting offsets
+			offset = 0;
+			for(List<Concept> list: index.values()){
+				out.writeInt(offset);
+				offset += list.size();
+			}
+			out.writeInt(offset);
+			// postings
+			for(List<Concept> list: index.values()){
+				for(Concept c: list)
+					out.writeInt(c.number);
+			}
+			// concept offsets
+			offset = 0;
+			for(byte [] b: conceptBytes){
+				out.writeInt(offset);
+				offset += b.length;
+			}
+			out.writeInt(offset);
+			for(byte [] key: index.keySet())
+				out.write(key);
+			for(byte [] b: conceptBytes)
+				out.write(b);
+		}finally{
+			out.close();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 2){
+			System.err.println("Usage: java "+TermDictionaryCompiler.class.getName()+" <output> <ontology files> [-mappings <registry>]");
+			System.err.println("Ex: java "+TermDictionaryCompiler.class.getName()+" terms.dict deepphe/nlpOvarian.owl deepphe/nlpMelanoma.owl cancer_models/breastCancer.owl");
+			return;
+		}
+		long time = System.currentTimeMillis();
+		TermDictionaryCompiler compiler = new TermDictionaryCompiler();
+		MappingRegistry registry = null;
+		List<String> files = new ArrayList<String>(Arrays.asList(args).subList(1,args.length));
+		int i = files.indexOf("-mappings");
+		if(i > -1 && i+1 < files.size()){
+			registry = new MappingRegistry(new File(files.get(i+1)));
+			compiler.setMappings(registry);
+			files.remove(i+1);
+			files.remove(i);
+		}
+		try{
+			for(String f: files){
+				System.out.println("loading "+f+" ..");
+				compiler.add(OOntology.loadOntology(new File(f)));
+			}
+			compiler.write(new File(args[0]));
+		}finally{
+			if(registry != null)
+				registry.close();
+		}
+		TermDictionary dictionary = new TermDictionary(new File(args[0]));
+		System.out.println("compiled "+dictionary.getTermCount()+" terms of "+dictionary.getConceptCount()+" classes in "+(System.currentTimeMillis()-time)+" ms");
+	}
+}
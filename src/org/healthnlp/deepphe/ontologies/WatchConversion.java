@@ -0,0 +1,250 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IOntologyException;
+
+/**
+ * long running batch conversion that keeps source ontologies loaded and reruns conversions when their files change.
+ * Directories of every file that a manifest job reads (s.a. deepphe/ and cancer_models/) are watched,
+ * events are collected until there is a quiet period (an ontology editor saves a file in several writes),
+ * then only jobs that read a changed file, and jobs that read what those jobs write, run again.
+ * Files are compared by modification time and size against what was last seen, so files written
+ * by the conversions themselves do not trigger another run.
+ */
+public class WatchConversion {
+	private BatchConversion batch;
+	private OntologyCache cache = new OntologyCache();
+	private Map<File,String> stamps = new HashMap<File, String>();
+	private long delay = 500;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * watch files of a batch conversion
+	 * @param batch
+	 */
+	public WatchConversion(BatchConversion batch){
+		this.batch = batch;
+		batch.setOntologyCache(cache);
+		updateStamps();
+	}
+
+	/**
+	 * quiet period after last file event before conversions run
+	 * @param delay - in milliseconds
+	 */
+	public void setDelay(long delay) {
+		this.delay = delay;
+	}
+
+	/**
+	 * number of conversions that can run at the same time
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public OntologyCache getOntologyCache() {
+		return cache;
+	}
+
+	/**
+	 * load source ontologies of all jobs, so the first change does not pay for parsing them
+	 * @throws IOntologyException
+	 */
+	public void preload() throws IOntologyException{
+		for(BatchConversion.Job job: batch.getJobs()){
+			// reachable only conversions load a filtered copy of their source
+			if(job.source.exists() && (BatchConversion.CONVERT.equals(job.tool) || !job.reachableOnly))
+				cache.get(job.source);
+		}
+	}
+
+	private static String getStamp(File f){
+		return f.lastModified()+":"+f.length();
+	}
+
+	/**
+	 * remember modification time and size of every file that jobs read or write
+	 */
+	private void updateStamps(){
+		for(BatchConversion.Job job: batch.getJobs()){
+			for(File f: job.getInputs())
+				stamps.put(f,getStamp(f));
+			for(File f: job.getOutputs())
+				stamps.put(f,getStamp(f));
+		}
+	}
+
+	/**
+	 * remember modification time and size of files that jobs wrote
+	 * @param jobs - jobs that ran
+	 */
+	private void updateOutputStamps(List<BatchConversion.Job> jobs){
+		for(BatchConversion.Job job: jobs){
+			for(File f: job.getOutputs())
+				stamps.put(f,getStamp(f));
+		}
+	}
+
+	/**
+	 * files of jobs that are different from when they were last seen
+	 * @param files - files that had events
+	 * @return
+	 */
+	Set<File> getChangedFiles(Set<File> files){
+		Set<File> changed = new LinkedHashSet<File>();
+		for(File f: files){
+			String stamp = stamps.get(f);
+			if(stamp != null && !stamp.equals(getStamp(f)))
+				changed.add(f);
+		}
+		return changed;
+	}
+
+	/**
+	 * jobs that read changed files or outputs of other affected jobs, in manifest order
+	 * @param changed
+	 * @return
+	 */
+	public List<BatchConversion.Job> getAffectedJobs(Set<File> changed){
+		Set<File> stale = new LinkedHashSet<File>(changed);
+		List<BatchConversion.Job> affected = new ArrayList<BatchConversion.Job>();
+		for(BatchConversion.Job job: batch.getJobs()){
+			for(File f: job.getInputs()){
+				if(stale.contains(f)){
+					affected.add(job);
+					stale.addAll(job.getOutputs());
+					break;
+				}
+			}
+		}
+		return affected;
+	}
+
+	/**
+	 * directories to watch
+	 * @return
+	 */
+	private Set<File> getDirectories(){
+		Set<File> dirs = new LinkedHashSet<File>();
+		for(BatchConversion.Job job: batch.getJobs()){
+			for(File f: job.getInputs()){
+				if(f.getParentFile() != null && f.getParentFile().isDirectory())
+					dirs.add(f.getParentFile());
+			}
+		}
+		return dirs;
+	}
+
+	/**
+	 * watch directories and run affected conversions until interrupted
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void watch() throws IOException, InterruptedException{
+		WatchService watcher = FileSystems.getDefault().newWatchService();
+		try{
+			Map<WatchKey,Path> keys = new HashMap<WatchKey, Path>();
+			for(File dir: getDirectories()){
+				Path path = dir.toPath();
+				keys.put(path.register(watcher,StandardWatchEventKinds.ENTRY_CREATE,StandardWatchEventKinds.ENTRY_MODIFY),path);
+				System.out.println("watching: "+dir.getAbsolutePath());
+			}
+			while(true){
+				Set<File> files = new LinkedHashSet<File>();
+				// collect events until nothing happens for a while
+				for(WatchKey key = watcher.take(); key != null; key = watcher.poll(delay,TimeUnit.MILLISECONDS)){
+					Path dir = keys.get(key);
+					for(WatchEvent<?> e: key.pollEvents()){
+						if(e.kind() == StandardWatchEventKinds.OVERFLOW)
+							files.addAll(stamps.keySet());
+						else if(dir != null)
+							files.add(dir.resolve((Path) e.context()).toFile().getCanonicalFile());
+					}
+					key.reset();
+				}
+				Set<File> changed = getChangedFiles(files);
+				// changed files are stamped before conversions read them, so an edit made during a run triggers the next one
+				for(File f: changed)
+					stamps.put(f,getStamp(f));
+				List<BatchConversion.Job> affected = getAffectedJobs(changed);
+				if(affected.isEmpty())
+					continue;
+				System.out.println("changed: "+changed+", rerunning "+affected);
+				long time = System.currentTimeMillis();
+				try{
+					batch.run(affected,threads);
+					System.out.println("done in "+(System.currentTimeMillis()-time)+" ms");
+				}catch(Exception e){
+					e.printStackTrace();
+				}finally{
+					updateOutputStamps(affected);
+				}
+			}
+		}finally{
+			watcher.close();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> params = new ArrayList<String>();
+		boolean incremental = false, reachableOnly = false, check = false;
+		MappingRegistry mappings = null;
+		long delay = 500;
+		for(int i=0;i<args.length;i++){
+			if("-incremental".equals(args[i]))
+				incremental = true;
+			else if("-reachable".equals(args[i]))
+				reachableOnly = true;
+			else if("-check".equals(args[i]))
+				check = true;
+			else if("-mappings".equals(args[i]) && i+1 < args.length)
+				mappings = new MappingRegistry(new File(args[++i]));
+			else if("-delay".equals(args[i]) && i+1 < args.length)
+				delay = Long.parseLong(args[++i]);
+			else
+				params.add(args[i]);
+		}
+		if(params.isEmpty()){
+			System.err.println("Usage: java "+WatchConversion.class.getName()+" [-incremental] [-reachable] [-check] [-mappings <registry>] [-delay <ms>] <manifest> [threads]");
+			return;
+		}
+		BatchConversion batch = new BatchConversion(new File(params.get(0)));
+		batch.setIncremental(incremental);
+		batch.setReachableOnly(reachableOnly);
+		batch.setConsistencyCheck(check);
+		batch.setMappingRegistry(mappings);
+		WatchConversion watch = new WatchConversion(batch);
+		watch.setDelay(delay);
+		if(params.size() > 1)
+			watch.setThreads(Integer.parseInt(params.get(1)));
+		if(mappings != null){
+			final MappingRegistry registry = mappings;
+			Runtime.getRuntime().addShutdownHook(new Thread(){
+				public void run(){
+					registry.close();
+				}
+			});
+		}
+		long time = System.currentTimeMillis();
+		watch.preload();
+		System.out.println("loaded "+watch.getOntologyCache().size()+" ontologies in "+(System.currentTimeMillis()-time)+" ms");
+		watch.watch();
+	}
+}
@@ -0,0 +1,114 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * explicit work stack for hierarchy traversals that used to recurse.
+ * Items are taken last in first out, and a list of items is pushed in reverse, so a traversal
+ * visits nodes in the same depth first pre-order as the recursive version, using heap instead of call stack.
+ * An optional visited set makes sure that an item reachable through several parents is only taken once.
+ * Items are marked visited when they are taken, not when they are pushed, so in a graph where an item is
+ * reachable through several parents it is still visited where the recursive version first reaches it.
+ * Pending work can also be taken out in chunks that can be handed to worker threads, the queue itself
+ * is not thread safe, so chunks are taken from a single thread.
+ * @param <T>
+ */
+public class WorkQueue<T> {
+	private Deque<T> stack = new ArrayDeque<T>();
+	private Set<T> visited;
+
+	/**
+	 * work queue that takes every pushed item
+	 */
+	public WorkQueue(){}
+
+	/**
+	 * work queue
+	 * @param trackVisited - skip items that were already taken once
+	 */
+	public WorkQueue(boolean trackVisited){
+		if(trackVisited)
+			visited = new HashSet<T>();
+	}
+
+	/**
+	 * add item to the top of the stack
+	 * @param item
+	 * @return false if item was already visited
+	 */
+	public boolean push(T item){
+		if(visited != null && visited.contains(item))
+			return false;
+		stack.push(item);
+		return true;
+	}
+
+	/**
+	 * add items, so that the first item is taken first
+	 * @param items
+	 */
+	public void pushAll(T [] items){
+		for(int i=items.length-1;i>=0;i--){
+			push(items[i]);
+		}
+	}
+
+	/**
+	 * take next item
+	 * @return item or null if queue is empty
+	 */
+	public T pop(){
+		T item = peek();
+		if(item != null){
+			stack.poll();
+			if(visited != null)
+				visited.add(item);
+		}
+		return item;
+	}
+
+	/**
+	 * next item without taking it
+	 * @return item or null if queue is empty
+	 */
+	public T peek(){
+		// drop items that were taken through another parent since they were pushed
+		while(visited != null && !stack.isEmpty() && visited.contains(stack.peek()))
+			stack.poll();
+		return stack.peek();
+	}
+
+	/**
+	 * take up to size next items in the order they would be popped, items are marked visited as they are taken
+	 * @param size
+	 * @return
+	 */
+	public List<T> nextChunk(int size){
+		List<T> chunk = new ArrayList<T>(Math.max(0,Math.min(size,stack.size())));
+		while(chunk.size() < size){
+			T item = pop();
+			if(item == null)
+				break;
+			chunk.add(item);
+		}
+		return chunk;
+	}
+
+	public boolean isEmpty(){
+		return peek() == null;
+	}
+
+	/**
+	 * was item ever taken (only when visited items are tracked)
+	 * @param item
+	 * @return
+	 */
+	public boolean isVisited(T item){
+		return visited != null && visited.contains(item);
+	}
+}
@@ -0,0 +1,82 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * input files recorded by a change store for skipping unchanged conversions
+ */
+public class ChangeStoreTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File writeOntology(String name, String comment) throws IOException{
+		File file = new File(folder.getRoot(),name);
+		FileOutputStream out = new FileOutputStream(file);
+		try{
+			String text = "<?xml version=\"1.0\"?>\n"
+					+ "<Ontology xmlns=\"http://www.w3.org/2002/07/owl#\" ontologyIRI=\"http://test.org/"+name+"\">\n"
+					+ "<!-- "+comment+" -->\n"
+					+ "</Ontology>\n";
+			out.write(text.getBytes("UTF-8"));
+		}finally{
+			out.close();
+		}
+		return file;
+	}
+
+	private void commit(File target, File ... inputs){
+		ChangeStore store = new ChangeStore(target);
+		try{
+			store.setInputs(inputs);
+			store.commit();
+		}finally{
+			store.close();
+		}
+	}
+
+	@Test
+	public void testUnchangedInputs() throws IOException{
+		File source = writeOntology("source.owl","one");
+		File target = writeOntology("target.owl","one");
+		assertFalse(ChangeStore.isUnchanged(target,source,target));
+		commit(target,source,target);
+		assertTrue(ChangeStore.isUnchanged(target,source,target));
+
+		// any change to an input is noticed
+		writeOntology("source.owl","two");
+		assertFalse(ChangeStore.isUnchanged(target,source,target));
+		commit(target,source,target);
+		assertTrue(ChangeStore.isUnchanged(target,source,target));
+		writeOntology("target.owl","two");
+		assertFalse(ChangeStore.isUnchanged(target,source,target));
+	}
+
+	@Test
+	public void testInputsOfLastCommit() throws IOException{
+		File source = writeOntology("source.owl","one");
+		File model = writeOntology("model.owl","one");
+		File target = writeOntology("target.owl","one");
+		commit(target,source,target,model);
+		assertTrue(ChangeStore.isUnchanged(target,source,target,model));
+		// a run without inputs does not keep inputs of an earlier run
+		commit(target);
+		assertFalse(ChangeStore.isUnchanged(target,source,target,model));
+		assertFalse(ChangeStore.isUnchanged(target));
+	}
+
+	@Test
+	public void testMissingTarget() throws IOException{
+		File source = writeOntology("source.owl","one");
+		File target = new File(folder.getRoot(),"target.owl");
+		assertFalse(ChangeStore.isUnchanged(target,source,target));
+	}
+}
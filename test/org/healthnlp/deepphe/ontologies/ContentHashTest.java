@@ -0,0 +1,74 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.healthnlp.deepphe.ontologies.MockResources.addSubClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.addValue;
+import static org.healthnlp.deepphe.ontologies.MockResources.newClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.newProperty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+
+public class ContentHashTest {
+	private static final String SEE_ALSO = "http://www.w3.org/2000/01/rdf-schema#seeAlso";
+	private IProperty code = newProperty("code"), seeAlso = newProperty(SEE_ALSO);
+
+	private IClass newLung(String ... codes){
+		IClass lung = newClass("Lung");
+		addSubClass(newClass("Organ"),lung);
+		for(String c: codes)
+			addValue(lung,code,c);
+		return lung;
+	}
+
+	@Test
+	public void testEmptyHash(){
+		// FNV-1a offset basis
+		assertEquals(0xcbf29ce484222325L,ContentHash.hash(Collections.<String>emptyList()));
+	}
+
+	@Test
+	public void testLineBreaksCount(){
+		assertNotEquals(ContentHash.hash(Arrays.asList("ab")),ContentHash.hash(Arrays.asList("a","b")));
+		assertNotEquals(ContentHash.hash(Arrays.asList("a")),ContentHash.hash(Arrays.asList("a","")));
+	}
+
+	@Test
+	public void testCanonicalForm(){
+		List<String> lines = ContentHash.getCanonicalForm(newLung("C2","C1"));
+		assertEquals(Arrays.asList(
+				"annotation "+MockResources.BASE+"code C1",
+				"annotation "+MockResources.BASE+"code C2",
+				"resource "+MockResources.BASE+"Lung",
+				"super "+MockResources.BASE+"Organ"),lines);
+	}
+
+	@Test
+	public void testOrderDoesNotMatter(){
+		assertEquals(ContentHash.hash(newLung("C1","C2")),ContentHash.hash(newLung("C2","C1")));
+		assertNotEquals(ContentHash.hash(newLung("C1")),ContentHash.hash(newLung("C1","C2")));
+	}
+
+	@Test
+	public void testMappingsLeftOut(){
+		IClass lung = newLung("C1");
+		long hash = ContentHash.hash(lung);
+		addValue(lung,seeAlso,ConvertOntologyURIs.BASE_URL_PREFIX+"/deepphe/model.owl#DP1");
+		assertEquals(hash,ContentHash.hash(lung));
+		assertTrue(ContentHash.getCanonicalForm(lung,true).contains("annotation "+SEE_ALSO+" "+ConvertOntologyURIs.BASE_URL_PREFIX+"/deepphe/model.owl#DP1"));
+
+		// other seeAlso values are content
+		addValue(lung,seeAlso,"http://example.org/lung");
+		assertNotEquals(hash,ContentHash.hash(lung));
+		assertFalse(ContentHash.getCanonicalForm(lung).contains("annotation "+SEE_ALSO+" "+ConvertOntologyURIs.BASE_URL_PREFIX+"/deepphe/model.owl#DP1"));
+	}
+}
@@ -0,0 +1,125 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.healthnlp.deepphe.ontologies.MockResources.addSubClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.newClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.newOntology;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+
+public class HierarchyIndexTest {
+	private IClass root, a, b, c, d;
+
+	/**
+	 * diamond: root - a, a - b, a - c, b - d, c - d
+	 */
+	@Before
+	public void setUp(){
+		root = newClass("Thing");
+		a = newClass("A");
+		b = newClass("B");
+		c = newClass("C");
+		d = newClass("D");
+		newOntology(root,a,b,c,d);
+		addSubClass(root,a);
+		addSubClass(a,b);
+		addSubClass(a,c);
+		addSubClass(b,d);
+		addSubClass(c,d);
+	}
+
+	private static Set<IClass> set(IClass ... classes){
+		return new HashSet<IClass>(Arrays.asList(classes));
+	}
+
+	@Test
+	public void testDiamond(){
+		HierarchyIndex index = new HierarchyIndex(root);
+		assertEquals(5,index.size());
+		assertEquals(set(a,b,c,d),new HashSet<IClass>(index.getSubClasses(root)));
+		assertEquals(set(b,c,d),new HashSet<IClass>(index.getSubClasses(a)));
+		assertEquals(set(b,c,a,root),new HashSet<IClass>(index.getSuperClasses(d)));
+		assertTrue(index.isSubClassOf(d,b));
+		assertTrue(index.isSubClassOf(d,c));
+		assertTrue(index.isSubClassOf(d,root));
+		assertFalse(index.isSubClassOf(b,c));
+		assertFalse(index.isSubClassOf(a,d));
+		assertFalse(index.isSubClassOf(a,a));
+		assertTrue(index.isLeaf(d));
+		assertFalse(index.isLeaf(b));
+	}
+
+	@Test
+	public void testClosureHasNoDuplicates(){
+		HierarchyIndex index = new HierarchyIndex(root);
+		List<IClass> list = index.getSubClasses(root);
+		assertEquals(new HashSet<IClass>(list).size(),list.size());
+		list = index.getSuperClasses(d);
+		assertEquals(new HashSet<IClass>(list).size(),list.size());
+	}
+
+	@Test
+	public void testCycle(){
+		// d - a closes a cycle, the walk must still end
+		addSubClass(d,a);
+		HierarchyIndex index = new HierarchyIndex(root);
+		assertEquals(5,index.size());
+		assertEquals(set(a,b,c,d),new HashSet<IClass>(index.getSubClasses(root)));
+		assertTrue(index.isSubClassOf(d,a));
+		assertTrue(index.isSubClassOf(d,root));
+		assertFalse(index.isLeaf(d));
+	}
+
+	@Test
+	public void testAddSubClass(){
+		HierarchyIndex index = new HierarchyIndex(root);
+		// build intervals before the change
+		assertFalse(index.isSubClassOf(d,newClass("E")));
+		assertEquals(set(b,c,d),new HashSet<IClass>(index.getSubClasses(a)));
+
+		IClass e = newClass("E");
+		index.addSubClass(d,e);
+		assertTrue(index.contains(e));
+		assertFalse(index.isLeaf(d));
+		assertTrue(index.isLeaf(e));
+		assertEquals(set(b,c,d,e),new HashSet<IClass>(index.getSubClasses(a)));
+		assertEquals(set(d,b,c,a,root),new HashSet<IClass>(index.getSuperClasses(e)));
+		assertTrue(index.isSubClassOf(e,b));
+
+		// a second parent of an existing class
+		index.addSubClass(b,c);
+		assertTrue(index.isSubClassOf(c,b));
+		assertEquals(set(c,d,e),new HashSet<IClass>(index.getSubClasses(b)));
+		assertEquals(set(b,a,root),new HashSet<IClass>(index.getSuperClasses(c)));
+	}
+
+	@Test
+	public void testAddSubClassOfUnknownParent(){
+		HierarchyIndex index = new HierarchyIndex(root);
+		IClass x = newClass("X"), y = newClass("Y");
+		index.addSubClass(x,y);
+		assertFalse(index.contains(x));
+		assertFalse(index.contains(y));
+	}
+
+	@Test
+	public void testRemoveSubClass(){
+		HierarchyIndex index = new HierarchyIndex(root);
+		assertTrue(index.isSubClassOf(d,b));
+		index.removeSubClass(b,d);
+		assertFalse(index.isSubClassOf(d,b));
+		assertTrue(index.isSubClassOf(d,c));
+		assertTrue(index.isLeaf(b));
+		assertEquals(set(c,a,root),new HashSet<IClass>(index.getSuperClasses(d)));
+	}
+}
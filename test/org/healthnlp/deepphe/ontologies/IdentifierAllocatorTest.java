@@ -0,0 +1,56 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.healthnlp.deepphe.ontologies.MockResources.newClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.newOntology;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IdentifierAllocatorTest {
+
+	@Test
+	public void testParseAndFormat(){
+		assertEquals(42,IdentifierAllocator.parse("DP000042"));
+		assertEquals(1234567,IdentifierAllocator.parse("DP1234567"));
+		assertEquals(-1,IdentifierAllocator.parse("DP42"));
+		assertEquals(-1,IdentifierAllocator.parse("DP00004x"));
+		assertEquals(-1,IdentifierAllocator.parse("Lung"));
+		assertEquals(-1,IdentifierAllocator.parse(null));
+		assertEquals("DP000042",IdentifierAllocator.format(42));
+		assertEquals("DP1234567",IdentifierAllocator.format(1234567));
+	}
+
+	@Test
+	public void testSkipsUsedIdentifiers(){
+		IdentifierAllocator allocator = new IdentifierAllocator(newOntology(
+				newClass("DP000001"),newClass("DP000002"),newClass("DP000004"),newClass("Lung")),1);
+		assertEquals("DP000003",allocator.nextName());
+		assertEquals("DP000005",allocator.nextName());
+		assertEquals(6,allocator.getCursor());
+	}
+
+	@Test
+	public void testPresetNamesAreNotHandedOut(){
+		IdentifierAllocator allocator = new IdentifierAllocator(newOntology(newClass("DP000001")),1);
+		assertEquals(2,allocator.next());
+		// classes created under names kept in a mapping registry or rdfs:seeAlso after the scan
+		allocator.markUsed("DP000003");
+		allocator.markUsed("DP000004");
+		allocator.markUsed("Lung");
+		assertTrue(allocator.isUsed(3));
+		assertFalse(allocator.isUsed(5));
+		assertEquals(5,allocator.next());
+		allocator.markUsed(6);
+		assertEquals(7,allocator.next());
+	}
+
+	@Test
+	public void testNamesBelowCursorStayFree(){
+		IdentifierAllocator allocator = new IdentifierAllocator(newOntology(),10);
+		allocator.markUsed("DP000002");
+		assertEquals(10,allocator.next());
+		assertFalse(allocator.isUsed(1));
+	}
+}
@@ -0,0 +1,49 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.healthnlp.deepphe.ontologies.MockResources.newClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+
+public class LabelIndexTest {
+
+	@Test
+	public void testNormalize(){
+		assertEquals("",LabelIndex.normalize(""));
+		assertEquals("Lung",LabelIndex.normalize("Lung"));
+		assertEquals("SmallCellCarcinoma",LabelIndex.normalize("Small Cell Carcinoma"));
+		assertEquals("LeftLung",LabelIndex.normalize(" Left\tLung\r\n"));
+		assertEquals("ab",LabelIndex.normalize("a\u000B\fb"));
+	}
+
+	@Test
+	public void testNormalizeMatchesRegex(){
+		for(String s: Arrays.asList("a b","  a  b  ","\ta\nb\r","a b","a b","Renal artery.left")){
+			assertEquals(s.replaceAll("\\s",""),LabelIndex.normalize(s));
+		}
+	}
+
+	@Test
+	public void testNormalizeReturnsSameString(){
+		String s = "Breast_Carcinoma";
+		assertSame(s,LabelIndex.normalize(s));
+	}
+
+	@Test
+	public void testIndex(){
+		IClass lung = newClass("Lung","Lung Tissue"), breast = newClass("Breast");
+		LabelIndex index = new LabelIndex(Arrays.<IResource>asList(lung,breast).iterator());
+		assertEquals(2,index.size());
+		assertSame(lung,index.get("LungTissue"));
+		assertEquals("Lung",index.getName("LungTissue"));
+		assertEquals("LungTissue",index.getLabel("Lung"));
+		assertEquals("Breast",index.getLabel(breast));
+		assertSame(breast,index.getClass("Breast"));
+	}
+}
@@ -0,0 +1,242 @@
+package org.healthnlp.deepphe.ontologies;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.ILogicExpression;
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+import edu.pitt.dbmi.nlp.noble.ontology.IResource;
+import edu.pitt.dbmi.nlp.noble.ontology.IResourceIterator;
+import edu.pitt.dbmi.nlp.noble.ontology.IRestriction;
+
+/**
+ * in-memory classes, properties, restrictions and ontologies for tests of code that only reads them.
+ * Methods that are not backed by a field return an empty array, false, 0 or null.
+ */
+class MockResources {
+	public static final String BASE = "http://test.org/test.owl#";
+
+	/**
+	 * state of a single mock resource
+	 */
+	private static class Resource implements InvocationHandler {
+		String name;
+		String [] labels;
+		IOntology ontology;
+		List<IClass> subClasses = new ArrayList<IClass>();
+		List<IClass> superClasses = new ArrayList<IClass>();
+		List<IResource> classes = new ArrayList<IResource>();
+		Map<IProperty,List<Object>> values = new LinkedHashMap<IProperty, List<Object>>();
+		List<Object> necessary = new ArrayList<Object>();
+		IProperty property;
+		int type;
+		ILogicExpression parameter;
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String m = method.getName();
+			if("equals".equals(m))
+				return proxy == args[0];
+			if("hashCode".equals(m))
+				return System.identityHashCode(proxy);
+			if("toString".equals(m))
+				return name;
+			if("getName".equals(m))
+				return name.substring(name.lastIndexOf('#')+1);
+			if("getURI".equals(m))
+				return URI.create(name.contains(":")?name:BASE+name);
+			if("getLabels".equals(m))
+				return labels;
+			if("getOntology".equals(m))
+				return ontology;
+			if("getDirectSubClasses".equals(m))
+				return subClasses.toArray(new IClass [0]);
+			if("getDirectSuperClasses".equals(m))
+				return superClasses.toArray(new IClass [0]);
+			if("getSuperClasses".equals(m))
+				return getAncestors(superClasses).toArray(new IClass [0]);
+			if("getDirectNecessaryRestrictions".equals(m))
+				return newExpression(ILogicExpression.AND,necessary.toArray());
+			if("getProperty".equals(m))
+				return property;
+			if("getRestrictionType".equals(m))
+				return type;
+			if("getParameter".equals(m))
+				return parameter;
+			if("getAllClasses".equals(m) || "getAllResources".equals(m))
+				return iterator(classes.iterator());
+			if("getAllProperties".equals(m) || "getAllInstances".equals(m))
+				return iterator(new ArrayList<IResource>().iterator());
+			if("getProperties".equals(m))
+				return values.keySet().toArray(new IProperty [0]);
+			if("getPropertyValues".equals(m)){
+				List<Object> list = values.get(args[0]);
+				return (list == null)?new Object [0]:list.toArray();
+			}
+			Class<?> type = method.getReturnType();
+			if(type.isArray())
+				return Array.newInstance(type.getComponentType(),0);
+			if(type == boolean.class)
+				return false;
+			if(type == int.class)
+				return 0;
+			return null;
+		}
+	}
+
+	private static Resource getResource(Object proxy){
+		return (Resource) Proxy.getInvocationHandler(proxy);
+	}
+
+	private static <T> T create(Class<T> type, Resource r){
+		return type.cast(Proxy.newProxyInstance(MockResources.class.getClassLoader(),new Class<?> [] {type},r));
+	}
+
+	/**
+	 * class with a name and labels
+	 * @param name
+	 * @param labels
+	 * @return
+	 */
+	public static IClass newClass(String name, String ... labels){
+		Resource r = new Resource();
+		r.name = name;
+		r.labels = labels;
+		return create(IClass.class,r);
+	}
+
+	/**
+	 * property with a name
+	 * @param name - name in the test ontology or a full URI
+	 * @return
+	 */
+	public static IProperty newProperty(String name){
+		Resource r = new Resource();
+		r.name = name;
+		r.labels = new String [0];
+		return create(IProperty.class,r);
+	}
+
+	/**
+	 * ontology with classes, every class is set to belong to it
+	 * @param classes
+	 * @return
+	 */
+	public static IOntology newOntology(IClass ... classes){
+		Resource r = new Resource();
+		r.name = "test";
+		r.labels = new String [0];
+		IOntology ont = create(IOntology.class,r);
+		for(IClass c: classes){
+			r.classes.add(c);
+			getResource(c).ontology = ont;
+		}
+		return ont;
+	}
+
+	/**
+	 * restriction on a property
+	 * @param property
+	 * @param type - restriction type, e.g. IRestriction.SOME_VALUES_FROM
+	 * @param parameter - filler expression
+	 * @return
+	 */
+	public static IRestriction newRestriction(IProperty property, int type, ILogicExpression parameter){
+		Resource r = new Resource();
+		r.name = "restriction";
+		r.labels = new String [0];
+		r.property = property;
+		r.type = type;
+		r.parameter = parameter;
+		return create(IRestriction.class,r);
+	}
+
+	/**
+	 * logic expression with operands in the order given
+	 * @param expressionType - e.g. ILogicExpression.AND
+	 * @param operands
+	 * @return
+	 */
+	public static ILogicExpression newExpression(final int expressionType, Object ... operands){
+		final List<Object> list = new ArrayList<Object>(Arrays.asList(operands));
+		return create(ILogicExpression.class,new Resource(){
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if("getExpressionType".equals(method.getName()))
+					return expressionType;
+				if(method.getDeclaringClass().isInstance(list))
+					return method.invoke(list,args);
+				return super.invoke(proxy,method,args);
+			}
+		});
+	}
+
+	/**
+	 * add a necessary restriction asserted on a class
+	 * @param cls
+	 * @param r
+	 */
+	public static void addRestriction(IClass cls, IRestriction r){
+		getResource(cls).necessary.add(r);
+	}
+
+	/**
+	 * link a parent and a child in both directions
+	 * @param parent
+	 * @param child
+	 */
+	public static void addSubClass(IClass parent, IClass child){
+		getResource(parent).subClasses.add(child);
+		getResource(child).superClasses.add(parent);
+	}
+
+	/**
+	 * add a property value to a resource
+	 * @param r
+	 * @param p
+	 * @param value
+	 */
+	public static void addValue(IResource r, IProperty p, Object value){
+		Map<IProperty,List<Object>> values = getResource(r).values;
+		List<Object> list = values.get(p);
+		if(list == null){
+			list = new ArrayList<Object>();
+			values.put(p,list);
+		}
+		list.add(value);
+	}
+
+	private static List<IClass> getAncestors(List<IClass> parents){
+		List<IClass> list = new ArrayList<IClass>();
+		for(IClass p: parents){
+			if(!list.contains(p))
+				list.add(p);
+			for(IClass a: getAncestors(getResource(p).superClasses)){
+				if(!list.contains(a))
+					list.add(a);
+			}
+		}
+		return list;
+	}
+
+	private static IResourceIterator iterator(final Iterator<IResource> it){
+		return create(IResourceIterator.class,new Resource(){
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if("hasNext".equals(method.getName()))
+					return it.hasNext();
+				if("next".equals(method.getName()))
+					return it.next();
+				return super.invoke(proxy,method,args);
+			}
+		});
+	}
+}
@@ -0,0 +1,97 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.healthnlp.deepphe.ontologies.MockResources.addSubClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.addValue;
+import static org.healthnlp.deepphe.ontologies.MockResources.newClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.newOntology;
+import static org.healthnlp.deepphe.ontologies.MockResources.newProperty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+
+public class OntologyDiffTest {
+	private static final String LABEL = "http://www.w3.org/2000/01/rdf-schema#label";
+	private static final String SEE_ALSO = "http://www.w3.org/2000/01/rdf-schema#seeAlso";
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private IProperty label = newProperty(LABEL), seeAlso = newProperty(SEE_ALSO);
+
+	/**
+	 * version of a small ontology, the new version adds Heart, removes Breast and relabels DP2
+	 */
+	private IOntology getVersion(boolean newVersion){
+		IClass organ = newClass("DP1"), lung = newClass("DP2"), other = newClass(newVersion?"DP4":"DP3");
+		addValue(organ,label,"Organ");
+		addValue(lung,label,newVersion?"Lung Tissue":"Lung");
+		addValue(other,label,newVersion?"Heart":"Breast");
+		addSubClass(organ,lung);
+		addSubClass(organ,other);
+		// mappings are rewritten by every run
+		addValue(organ,seeAlso,ConvertOntologyURIs.BASE_URL_PREFIX+"/deepphe/model.owl#"+(newVersion?"DP10":"DP11"));
+		return newOntology(organ,lung,other);
+	}
+
+	private List<String> toString(List<OntologyDiff.Change> changes){
+		List<String> list = new ArrayList<String>();
+		for(OntologyDiff.Change c: changes)
+			list.add(c.toString());
+		return list;
+	}
+
+	@Test
+	public void testChanges(){
+		OntologyDiff diff = new OntologyDiff(getVersion(false),getVersion(true));
+		assertEquals(Arrays.asList("~ DP2 (Lung Tissue)","+ DP4 (Heart)","- DP3 (Breast)"),toString(diff.getChanges()));
+		OntologyDiff.Change c = diff.getChanges(OntologyDiff.CHANGED).get(0);
+		assertEquals(MockResources.BASE+"DP2",c.getURI());
+		assertEquals(Arrays.asList("annotation "+LABEL+" Lung Tissue"),c.getAddedLines());
+		assertEquals(Arrays.asList("annotation "+LABEL+" Lung"),c.getRemovedLines());
+		assertEquals(1,diff.getChanges(OntologyDiff.ADDED).size());
+		assertEquals(1,diff.getChanges(OntologyDiff.REMOVED).size());
+	}
+
+	@Test
+	public void testSameVersion(){
+		assertTrue(new OntologyDiff(getVersion(true),getVersion(true)).isEmpty());
+	}
+
+	@Test
+	public void testSnapshots() throws IOException{
+		File oldFile = folder.newFile("old"+OntologySnapshot.SUFFIX), newFile = folder.newFile("new"+OntologySnapshot.SUFFIX);
+		OntologySnapshot.write(getVersion(false),"old",oldFile);
+		OntologySnapshot.write(getVersion(true),"new",newFile);
+		OntologyDiff diff = new OntologyDiff(new OntologySnapshot(oldFile),new OntologySnapshot(newFile));
+		// snapshots keep sub classes and mappings, the diff leaves them out like it does for loaded versions
+		assertEquals(toString(new OntologyDiff(getVersion(false),getVersion(true)).getChanges(OntologyDiff.CHANGED)),
+				toString(diff.getChanges(OntologyDiff.CHANGED)));
+		assertEquals(3,diff.getChanges().size());
+	}
+
+	@Test
+	public void testReport(){
+		StringWriter w = new StringWriter();
+		new OntologyDiff(getVersion(false),getVersion(true)).write(w);
+		String [] lines = w.toString().split("\r?\n");
+		assertEquals(Arrays.asList(
+				"~ DP2 (Lung Tissue)",
+				"    - annotation "+LABEL+" Lung",
+				"    + annotation "+LABEL+" Lung Tissue",
+				"- DP3 (Breast)",
+				"+ DP4 (Heart)",
+				"1 added, 1 removed, 1 changed of 3 -> 3 resources"),Arrays.asList(lines));
+	}
+}
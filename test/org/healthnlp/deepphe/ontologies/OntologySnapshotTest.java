@@ -0,0 +1,115 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.healthnlp.deepphe.ontologies.MockResources.addSubClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.addValue;
+import static org.healthnlp.deepphe.ontologies.MockResources.newClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.newOntology;
+import static org.healthnlp.deepphe.ontologies.MockResources.newProperty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.IOntology;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+
+public class OntologySnapshotTest {
+	private static final String LABEL = "http://www.w3.org/2000/01/rdf-schema#label";
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private IClass lungClass;
+	private OntologySnapshot snapshot;
+
+	@Before
+	public void setUp() throws IOException{
+		IProperty label = newProperty(LABEL), code = newProperty("code");
+		IClass organ = newClass("Organ"), lung = newClass("Lung"), breast = newClass("Breast");
+		lungClass = lung;
+		// same name as Lung in an imported ontology
+		IClass other = newClass("http://other.org/other.owl#Lung");
+		addSubClass(organ,lung);
+		addSubClass(organ,breast);
+		addValue(lung,label,"Lung");
+		addValue(lung,label,"Pulmonary étude");
+		addValue(lung,code,"C12468");
+		IOntology ontology = newOntology(organ,lung,breast,other);
+
+		File file = folder.newFile("test"+OntologySnapshot.SUFFIX);
+		OntologySnapshot.write(ontology,"abc123",file);
+		snapshot = new OntologySnapshot(file);
+	}
+
+	@Test
+	public void testHeader(){
+		assertEquals("abc123",snapshot.getSourceHash());
+		assertEquals(MockResources.BASE+"test",snapshot.getURI());
+		assertEquals(4,snapshot.getResourceCount());
+	}
+
+	@Test
+	public void testResourcesSortedByURI(){
+		List<String> uris = new ArrayList<String>();
+		for(OntologySnapshot.Resource r: snapshot.getResources())
+			uris.add(r.getURI());
+		List<String> sorted = new ArrayList<String>(uris);
+		Collections.sort(sorted);
+		assertEquals(sorted,uris);
+		assertEquals(4,uris.size());
+	}
+
+	@Test
+	public void testRoundTrip(){
+		OntologySnapshot.Resource lung = snapshot.getResource(MockResources.BASE+"Lung");
+		assertEquals("Lung",lung.getName());
+		assertTrue(lung.isClass());
+		assertFalse(lung.isProperty());
+		assertEquals(Arrays.asList("Lung","Pulmonary étude"),lung.getLabels());
+		assertEquals(Arrays.asList("C12468"),lung.getAnnotations(MockResources.BASE+"code"));
+		assertEquals(Arrays.asList(MockResources.BASE+"Organ"),lung.getSuperClasses());
+		// content is the canonical form without the resource line
+		List<String> content = new ArrayList<String>(ContentHash.getCanonicalForm(lungClass,true));
+		assertTrue(content.remove("resource "+MockResources.BASE+"Lung"));
+		assertEquals(content,lung.getContent());
+	}
+
+	@Test
+	public void testSubClasses(){
+		OntologySnapshot.Resource organ = snapshot.getResource(MockResources.BASE+"Organ");
+		assertEquals(Arrays.asList(MockResources.BASE+"Breast",MockResources.BASE+"Lung"),organ.getSubClasses());
+		assertTrue(organ.getSuperClasses().isEmpty());
+	}
+
+	@Test
+	public void testLookup(){
+		assertNull(snapshot.getResource(MockResources.BASE+"Heart"));
+		assertEquals(2,snapshot.getResourcesByName("Lung").size());
+		assertEquals(1,snapshot.getResourcesByName("Breast").size());
+		assertTrue(snapshot.getResourcesByName("Heart").isEmpty());
+	}
+
+	@Test(expected=IOException.class)
+	public void testNotASnapshot() throws IOException{
+		File file = folder.newFile("other"+OntologySnapshot.SUFFIX);
+		FileOutputStream out = new FileOutputStream(file);
+		try{
+			out.write("NOTSNAPS and more bytes".getBytes("UTF-8"));
+		}finally{
+			out.close();
+		}
+		new OntologySnapshot(file);
+	}
+}
@@ -0,0 +1,67 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.io.OWLXMLOntologyFormat;
+import org.semanticweb.owlapi.model.AddOntologyAnnotation;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.OWLOntologyStorageException;
+
+public class OntologyWriterTest {
+	private static final String BASE = "http://test.org/test.owl";
+
+	private OWLOntology createOntology(OWLOntologyManager manager) throws OWLOntologyCreationException{
+		OWLDataFactory df = manager.getOWLDataFactory();
+		OWLOntology owl = manager.createOntology(IRI.create(BASE));
+		OWLClass organ = df.getOWLClass(IRI.create(BASE+"#Organ"));
+		OWLClass lung = df.getOWLClass(IRI.create(BASE+"#Lung"));
+		OWLClass site = df.getOWLClass(IRI.create(BASE+"#Body_Site"));
+		OWLObjectProperty hasSite = df.getOWLObjectProperty(IRI.create(BASE+"#hasBodySite"));
+		manager.addAxiom(owl,df.getOWLDeclarationAxiom(lung));
+		manager.addAxiom(owl,df.getOWLDeclarationAxiom(organ));
+		manager.addAxiom(owl,df.getOWLSubClassOfAxiom(lung,organ));
+		manager.addAxiom(owl,df.getOWLSubClassOfAxiom(lung,df.getOWLObjectSomeValuesFrom(hasSite,site)));
+		manager.addAxiom(owl,df.getOWLAnnotationAssertionAxiom(lung.getIRI(),
+				df.getOWLAnnotation(df.getRDFSLabel(),df.getOWLLiteral("Lung","en"))));
+		manager.addAxiom(owl,df.getOWLAnnotationAssertionAxiom(lung.getIRI(),
+				df.getOWLAnnotation(df.getRDFSComment(),df.getOWLLiteral("a < b & \"c\""))));
+		manager.applyChange(new AddOntologyAnnotation(owl,
+				df.getOWLAnnotation(df.getRDFSComment(),df.getOWLLiteral("test ontology"))));
+		return owl;
+	}
+
+	@Test
+	public void testRoundTrip() throws OWLOntologyCreationException, OWLOntologyStorageException, IOException{
+		OWLOntology owl = createOntology(OWLManager.createOWLOntologyManager());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OntologyWriter.writeOWLXML(owl,new OWLXMLOntologyFormat(),out);
+
+		OWLOntology copy = OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(owl.getOntologyID(),copy.getOntologyID());
+		assertEquals(owl.getAxioms(),copy.getAxioms());
+		assertEquals(owl.getAnnotations(),copy.getAnnotations());
+	}
+
+	@Test
+	public void testDeclarationsFirst() throws OWLOntologyCreationException, OWLOntologyStorageException, IOException{
+		OWLOntology owl = createOntology(OWLManager.createOWLOntologyManager());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OntologyWriter.writeOWLXML(owl,new OWLXMLOntologyFormat(),out);
+		String text = out.toString("UTF-8");
+		assertTrue(text.lastIndexOf("<Declaration>") < text.indexOf("<SubClassOf>"));
+		assertTrue(text.indexOf("</SubClassOf>") < text.indexOf("</Ontology>"));
+	}
+}
@@ -0,0 +1,85 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.healthnlp.deepphe.ontologies.MockResources.addRestriction;
+import static org.healthnlp.deepphe.ontologies.MockResources.addSubClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.newClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.newExpression;
+import static org.healthnlp.deepphe.ontologies.MockResources.newProperty;
+import static org.healthnlp.deepphe.ontologies.MockResources.newRestriction;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.pitt.dbmi.nlp.noble.ontology.IClass;
+import edu.pitt.dbmi.nlp.noble.ontology.ILogicExpression;
+import edu.pitt.dbmi.nlp.noble.ontology.IProperty;
+import edu.pitt.dbmi.nlp.noble.ontology.IRestriction;
+
+public class RestrictionIndexTest {
+	private IProperty hasSite = newProperty("hasBodySite"), hasStage = newProperty("hasStage");
+	private IClass lung = newClass("Lung"), breast = newClass("Breast");
+
+	private IRestriction some(IProperty p, Object ... fillers){
+		return newRestriction(p,IRestriction.SOME_VALUES_FROM,newExpression(ILogicExpression.OR,fillers));
+	}
+
+	@Test
+	public void testSignature(){
+		IRestriction r = some(hasSite,lung);
+		assertEquals(MockResources.BASE+"hasBodySite "+IRestriction.SOME_VALUES_FROM+" ("+ILogicExpression.OR+" "+MockResources.BASE+"Lung)",
+				RestrictionIndex.getSignature(r));
+	}
+
+	@Test
+	public void testOperandOrderDoesNotMatter(){
+		assertEquals(RestrictionIndex.getSignature(some(hasSite,lung,breast)),RestrictionIndex.getSignature(some(hasSite,breast,lung)));
+		// nested expressions are sorted as well
+		ILogicExpression a = newExpression(ILogicExpression.AND,lung,newExpression(ILogicExpression.OR,breast,lung));
+		ILogicExpression b = newExpression(ILogicExpression.AND,newExpression(ILogicExpression.OR,lung,breast),lung);
+		assertEquals(RestrictionIndex.getSignature(a),RestrictionIndex.getSignature(b));
+	}
+
+	@Test
+	public void testSignatureParts(){
+		String signature = RestrictionIndex.getSignature(some(hasSite,lung));
+		assertNotEquals(signature,RestrictionIndex.getSignature(some(hasStage,lung)));
+		assertNotEquals(signature,RestrictionIndex.getSignature(some(hasSite,breast)));
+		assertNotEquals(signature,RestrictionIndex.getSignature(newRestriction(hasSite,IRestriction.ALL_VALUES_FROM,newExpression(ILogicExpression.OR,lung))));
+		assertNotEquals(signature,RestrictionIndex.getSignature(newRestriction(hasSite,IRestriction.SOME_VALUES_FROM,newExpression(ILogicExpression.AND,lung))));
+	}
+
+	@Test
+	public void testAssertedRestrictions(){
+		IClass cancer = newClass("Lung_Cancer");
+		addRestriction(cancer,some(hasSite,lung));
+		RestrictionIndex index = new RestrictionIndex();
+		assertTrue(index.contains(cancer,some(hasSite,lung)));
+		assertFalse(index.contains(cancer,some(hasSite,breast)));
+	}
+
+	@Test
+	public void testAdd(){
+		IClass cancer = newClass("Lung_Cancer");
+		RestrictionIndex index = new RestrictionIndex();
+		assertFalse(index.contains(cancer,some(hasSite,lung,breast)));
+		index.add(cancer,some(hasSite,breast,lung));
+		assertTrue(index.contains(cancer,some(hasSite,lung,breast)));
+	}
+
+	@Test
+	public void testInherited(){
+		IClass cancer = newClass("Cancer"), carcinoma = newClass("Carcinoma"), lungCarcinoma = newClass("Lung_Carcinoma");
+		addSubClass(cancer,carcinoma);
+		addSubClass(carcinoma,lungCarcinoma);
+		addRestriction(cancer,some(hasStage,newClass("Stage")));
+		IRestriction stage = some(hasStage,newClass("Stage"));
+		// Stage is a different mock resource with the same URI
+		assertTrue(new RestrictionIndex().contains(lungCarcinoma,stage));
+		HierarchyIndex hierarchy = new HierarchyIndex(cancer);
+		assertTrue(new RestrictionIndex(hierarchy).contains(lungCarcinoma,stage));
+		assertFalse(new RestrictionIndex(hierarchy).contains(cancer,some(hasSite,lung)));
+	}
+}
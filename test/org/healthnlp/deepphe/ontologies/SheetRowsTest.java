@@ -0,0 +1,105 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * rows of an Excel spec read by MappingSpecValidator
+ */
+public class SheetRowsTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File createSheet(String name, String strings, String sheet) throws IOException{
+		File file = new File(folder.getRoot(),name);
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try{
+			if(strings != null){
+				out.putNextEntry(new ZipEntry("xl/sharedStrings.xml"));
+				out.write(strings.getBytes("UTF-8"));
+				out.closeEntry();
+			}
+			if(sheet != null){
+				out.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+				out.write(sheet.getBytes("UTF-8"));
+				out.closeEntry();
+			}
+		}finally{
+			out.close();
+		}
+		return file;
+	}
+
+	@Test
+	public void testRows() throws IOException{
+		String strings = "<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+				+ "<si><t>Class</t></si>"
+				+ "<si><r><t>Has </t></r><r><t>Property</t></r></si>"
+				+ "<si><t>Lung</t></si>"
+				+ "</sst>";
+		String sheet = "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>"
+				+ "<row r=\"1\"><c r=\"A1\" t=\"s\"><v>0</v></c><c r=\"B1\" t=\"s\"><v>1</v></c></row>"
+				+ "<row r=\"2\"><c r=\"A2\" t=\"s\"><v>2</v></c><c r=\"C2\"><v>12.5</v></c></row>"
+				+ "<row r=\"3\"><c r=\"AA3\" t=\"inlineStr\"><is><t>far</t></is></c></row>"
+				+ "</sheetData></worksheet>";
+		MappingSpecValidator.Rows rows = MappingSpecValidator.openRows(createSheet("spec.xlsx",strings,sheet));
+		try{
+			assertEquals(Arrays.asList("Class","Has Property"),rows.next());
+			// empty cells before a cell reference are filled in
+			assertEquals(Arrays.asList("Lung","","12.5"),rows.next());
+			assertEquals(26,rows.next().indexOf("far"));
+			assertNull(rows.next());
+		}finally{
+			rows.close();
+		}
+	}
+
+	@Test
+	public void testCellsWithoutReference() throws IOException{
+		String sheet = "<worksheet><sheetData>"
+				+ "<row><c><v>1</v></c><c><v>2</v></c></row>"
+				+ "</sheetData></worksheet>";
+		MappingSpecValidator.Rows rows = MappingSpecValidator.openRows(createSheet("spec.xlsx",null,sheet));
+		try{
+			assertEquals(Arrays.asList("1","2"),rows.next());
+			assertNull(rows.next());
+		}finally{
+			rows.close();
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testNoWorksheet() throws IOException{
+		MappingSpecValidator.openRows(createSheet("spec.xlsx","<sst/>",null));
+	}
+
+	@Test
+	public void testTextRows() throws IOException{
+		File file = folder.newFile("spec.txt");
+		FileOutputStream out = new FileOutputStream(file);
+		try{
+			out.write("Class\tProperty\nLung\t\n".getBytes("UTF-8"));
+		}finally{
+			out.close();
+		}
+		MappingSpecValidator.Rows rows = MappingSpecValidator.openRows(file);
+		try{
+			assertEquals(Arrays.asList("Class","Property"),rows.next());
+			assertEquals(Arrays.asList("Lung",""),rows.next());
+			assertNull(rows.next());
+		}finally{
+			rows.close();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.healthnlp.deepphe.ontologies.MockResources.newClass;
+import static org.healthnlp.deepphe.ontologies.MockResources.newOntology;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TermDictionaryTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private TermDictionary dictionary;
+
+	@Before
+	public void setUp() throws IOException{
+		TermDictionaryCompiler compiler = new TermDictionaryCompiler();
+		compiler.add(newOntology(
+				newClass("Lung","Lung","Lung Tissue"),
+				newClass("Lung_Carcinoma","Lung Carcinoma","Carcinoma of the Lung"),
+				newClass("Lymph_Node","Lymph  Node"),
+				newClass("DP123","Lung"),
+				newClass("Breast_Carcinoma")));
+		File file = folder.newFile("terms.dict");
+		compiler.write(file);
+		dictionary = new TermDictionary(file);
+	}
+
+	@Test
+	public void testNormalize(){
+		assertEquals("lung tissue",TermDictionary.normalize("  Lung \t Tissue "));
+		assertEquals("",TermDictionary.normalize(" "));
+	}
+
+	@Test
+	public void testCounts(){
+		assertEquals(5,dictionary.getConceptCount());
+		// lung, lung tissue, lung carcinoma, carcinoma of the lung, lymph node, breast carcinoma
+		assertEquals(6,dictionary.getTermCount());
+	}
+
+	@Test
+	public void testLookup(){
+		List<TermDictionary.Concept> concepts = dictionary.lookup("LUNG");
+		assertEquals(2,concepts.size());
+		assertEquals(MockResources.BASE+"Lung",concepts.get(0).getURI());
+		assertEquals("",concepts.get(0).getId());
+		assertEquals("DP123",concepts.get(1).getId());
+
+		concepts = dictionary.lookup("lymph node");
+		assertEquals(1,concepts.size());
+		assertEquals("Lymph  Node",concepts.get(0).getPreferredTerm());
+
+		// class without labels is known by its name
+		assertEquals("Breast Carcinoma",dictionary.lookup("breast carcinoma").get(0).getPreferredTerm());
+		assertTrue(dictionary.contains("Carcinoma of the Lung"));
+		assertFalse(dictionary.contains("Lung Carcinomas"));
+		assertFalse(dictionary.contains("Lun"));
+		assertFalse(dictionary.contains("zzz"));
+	}
+
+	@Test
+	public void testPrefix(){
+		assertEquals(Arrays.asList("lung","lung carcinoma","lung tissue"),dictionary.prefix("Lung",10));
+		assertEquals(Arrays.asList("lung","lung carcinoma"),dictionary.prefix("lung",2));
+		assertEquals(Arrays.asList("lymph node"),dictionary.prefix("ly",10));
+		assertTrue(dictionary.prefix("x",10).isEmpty());
+	}
+
+	@Test(expected=IOException.class)
+	public void testNotADictionary() throws IOException{
+		File file = folder.newFile("other.dict");
+		FileOutputStream out = new FileOutputStream(file);
+		try{
+			out.write("NOTTERMS and more bytes".getBytes("UTF-8"));
+		}finally{
+			out.close();
+		}
+		new TermDictionary(file);
+	}
+}
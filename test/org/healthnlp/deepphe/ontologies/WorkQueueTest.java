@@ -0,0 +1,131 @@
+package org.healthnlp.deepphe.ontologies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class WorkQueueTest {
+
+	/**
+	 * children of a small graph where d is reachable from b and c
+	 */
+	private static Map<String,String []> getGraph(){
+		Map<String,String []> graph = new HashMap<String, String[]>();
+		graph.put("a",new String [] {"b","c"});
+		graph.put("b",new String [] {"d","e"});
+		graph.put("c",new String [] {"d"});
+		graph.put("d",new String [] {"f"});
+		return graph;
+	}
+
+	private static void visit(String node, Map<String,String []> graph, List<String> order){
+		if(order.contains(node))
+			return;
+		order.add(node);
+		String [] children = graph.get(node);
+		if(children != null){
+			for(String c: children)
+				visit(c,graph,order);
+		}
+	}
+
+	@Test
+	public void testLastInFirstOut(){
+		WorkQueue<String> queue = new WorkQueue<String>();
+		queue.push("a");
+		queue.push("b");
+		queue.push("c");
+		assertEquals("c",queue.pop());
+		assertEquals("b",queue.pop());
+		assertEquals("a",queue.pop());
+		assertNull(queue.pop());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testPushAllKeepsOrder(){
+		WorkQueue<String> queue = new WorkQueue<String>();
+		queue.pushAll(new String [] {"a","b","c"});
+		assertEquals("a",queue.peek());
+		assertEquals("a",queue.pop());
+		assertEquals("b",queue.pop());
+		assertEquals("c",queue.pop());
+	}
+
+	@Test
+	public void testUntrackedQueueTakesDuplicates(){
+		WorkQueue<String> queue = new WorkQueue<String>();
+		queue.push("a");
+		queue.push("a");
+		assertEquals("a",queue.pop());
+		assertEquals("a",queue.pop());
+		assertFalse(queue.isVisited("a"));
+	}
+
+	@Test
+	public void testVisitedOnPop(){
+		WorkQueue<String> queue = new WorkQueue<String>(true);
+		assertTrue(queue.push("a"));
+		assertTrue(queue.push("a"));
+		assertFalse(queue.isVisited("a"));
+		assertEquals("a",queue.pop());
+		assertTrue(queue.isVisited("a"));
+		// second copy is dropped, and a visited item can not be pushed again
+		assertTrue(queue.isEmpty());
+		assertFalse(queue.push("a"));
+		assertNull(queue.pop());
+	}
+
+	@Test
+	public void testSameOrderAsRecursion(){
+		Map<String,String []> graph = getGraph();
+		List<String> expected = new ArrayList<String>();
+		visit("a",graph,expected);
+
+		List<String> order = new ArrayList<String>();
+		WorkQueue<String> queue = new WorkQueue<String>(true);
+		queue.push("a");
+		for(String node = queue.pop(); node != null; node = queue.pop()){
+			order.add(node);
+			String [] children = graph.get(node);
+			if(children != null)
+				queue.pushAll(children);
+		}
+		assertEquals(Arrays.asList("a","b","d","f","e","c"),expected);
+		assertEquals(expected,order);
+	}
+
+	@Test
+	public void testChunksInPopOrder(){
+		WorkQueue<String> queue = new WorkQueue<String>();
+		queue.pushAll(new String [] {"a","b","c","d","e"});
+		assertEquals(Arrays.asList("a","b"),queue.nextChunk(2));
+		assertEquals(Arrays.asList("c","d"),queue.nextChunk(2));
+		assertEquals(Arrays.asList("e"),queue.nextChunk(2));
+		assertTrue(queue.nextChunk(2).isEmpty());
+		queue.push("f");
+		assertTrue(queue.nextChunk(0).isEmpty());
+		assertEquals("f",queue.pop());
+	}
+
+	@Test
+	public void testChunksSkipVisited(){
+		WorkQueue<String> queue = new WorkQueue<String>(true);
+		queue.pushAll(new String [] {"a","b","a","c"});
+		List<String> chunk = queue.nextChunk(3);
+		// second a is dropped, it was taken in the same chunk
+		assertEquals(Arrays.asList("a","b","c"),chunk);
+		assertTrue(queue.isVisited("c"));
+		assertFalse(queue.push("b"));
+		assertTrue(queue.nextChunk(3).isEmpty());
+	}
+}